@@ -1,4 +1,6 @@
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 /**
@@ -7,33 +9,43 @@ import java.util.Random;
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
-public abstract class Animal implements Organism
+public abstract class Animal implements Organism, Cloneable
 {
     // The number of steps infected
     private static final int DISEASE_STEPS = 3;
-    private static final double INFECTION_PROBABILITY = 0.20;
 
     // Whether the animal is alive or not.
     private boolean alive;
     // The animal's position.
     private Location location;
+    // Whether the animal's own death and move are held back from other
+    // organisms until the step is committed.
+    private boolean holding;
+    // Whether the animal has died while holding.
+    private boolean dying;
+    // Where the animal has moved to while holding, or null.
+    private Location heldLocation;
     // Whether the animal is infected by a disease or not.
     // Animals that are infected die after given number of steps.
     private boolean infected;
     // Number of steps the animal has before dying when infected.
     private int infectedSteps;
     // The animal's sex. 'M' for 'Male', 'F' for 'Female'.
-    private final char sex;
+    private char sex;
+    // The animal's species id.
+    private final int species;
     // Randomiser to introduce variation into the population.
-    private static final Random rand = Randomizer.getRandom();
+    private static final Random rand = Randomizer.getRandom(Randomizer.BREED);
 
     /**
      * Constructor for objects of class Animal.
      * @param location The animal's location.
+     * @param species The animal's species id.
      */
-    public Animal(Location location)
+    public Animal(Location location, int species)
     {
         this.alive = true;
+        this.species = species;
         this.location = location;
         this.infected = false;
         // Randomise sex of the animal.
@@ -58,10 +70,52 @@ public abstract class Animal implements Organism
     /**
      * Indicate that the animal is no longer alive.
      */
-    protected void setDead()
+    public void setDead()
     {
-        alive = false;
-        location = null;
+        if(holding) {
+            dying = true;
+        }
+        else {
+            alive = false;
+            location = null;
+        }
+    }
+
+    /**
+     * Return whether the animal has lived through its act so far. This
+     * is isAlive, except that it also sees a death that is being held
+     * back from other organisms.
+     * @return true if the animal has not died.
+     */
+    protected boolean isLiving()
+    {
+        return alive && ! dying;
+    }
+
+    /**
+     * Hold back the animal's own death and move from other organisms
+     * until releaseChanges is called.
+     */
+    public void holdChanges()
+    {
+        holding = true;
+    }
+
+    /**
+     * Apply the death or move held back since holdChanges.
+     */
+    public void releaseChanges()
+    {
+        holding = false;
+        if(dying) {
+            dying = false;
+            heldLocation = null;
+            setDead();
+        }
+        else if(heldLocation != null) {
+            location = heldLocation;
+            heldLocation = null;
+        }
     }
 
     /**
@@ -79,7 +133,76 @@ public abstract class Animal implements Organism
      */
     protected void setLocation(Location location)
     {
+        if(holding) {
+            heldLocation = location;
+        }
+        else {
+            this.location = location;
+        }
+    }
+
+    /**
+     * Keep the animal at its current location in the next state of the
+     * field. If another organism has already moved there, the animal
+     * dies of overcrowding.
+     * @param nextFieldState The new state being built.
+     */
+    protected void stayInPlace(Field nextFieldState)
+    {
+        if(! nextFieldState.tryPlace(this, location)) {
+            nextFieldState.recordEvent(EventBatch.OVERCROWDING, this);
+            setDead();
+        }
+    }
+
+    /**
+     * Return a copy of the animal in its current state.
+     * @return A copy of the animal.
+     */
+    public Organism copy()
+    {
+        try {
+            return (Organism) super.clone();
+        }
+        catch(CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Write the animal's state, apart from its species and location.
+     * @param out Where to write the state.
+     * @throws IOException If the state cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException
+    {
+        out.writeByte(sex);
+        out.writeBoolean(infected);
+        out.writeByte(infectedSteps);
+    }
+
+    /**
+     * Take on a live state written by writeState, at the given location.
+     * @param in Where to read the state from.
+     * @param location The animal's new location.
+     * @throws IOException If the state cannot be read.
+     */
+    public void readState(DataInput in, Location location) throws IOException
+    {
+        alive = true;
         this.location = location;
+        sex = (char) in.readByte();
+        infected = in.readBoolean();
+        infectedSteps = in.readByte();
+    }
+
+    /**
+     * Return the animal's species id.
+     * @return The animal's species id.
+     */
+    public int getSpecies()
+    {
+        return species;
     }
 
     /**
@@ -131,23 +254,14 @@ public abstract class Animal implements Organism
     }
 
     /**
-     * Try infecting adjacent animals.
-     * @param field The current field.
-     * @param temp The current temperature given by weather.
+     * Return the animal's stamina as a fraction of its maximum stamina.
+     * @return The stamina level, between 0 and 1.
      */
-    protected void infect(Field field, int temp)
-    {
-        List<Location> locations = field.getAdjacentLocations(getLocation());
-
-        double newInfectionProb = INFECTION_PROBABILITY - ((temp - 20)/100);
-        for (Location loc : locations) {
-            Organism organism = field.getOrganismAt(loc);
-            if(organism instanceof Animal animal) {
-                if(animal.isAlive() && rand.nextDouble() <= newInfectionProb) {
-                    animal.setInfected();
-                }
-            }
-        }
-    }
+    public abstract double getStaminaLevel();
 
+    /**
+     * Gain stamina from eating food.
+     * @param nutrition The nutrition value of the food.
+     */
+    public abstract void feed(int nutrition);
 }
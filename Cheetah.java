@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -9,6 +12,7 @@ import java.util.Random;
  * @author David J. Barnes and Michael Kölling
  * @version 7.1
  */
+@SpeciesKernel(Species.CHEETAH)
 public class Cheetah extends Animal
 {
     // Characteristics shared by all cheetahs (class variables).
@@ -17,7 +21,8 @@ public class Cheetah extends Animal
     // The age to which a cheetah can live.
     private static final int MAX_AGE = 200;
     // The likelihood of a cheetah breeding.
-    private static final double BREEDING_PROBABILITY = 0.06;
+    // The default; a run can override it through Parameters.
+    static final double BREEDING_PROBABILITY = 0.06;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 2;
     // The range cheetah can mate in.
@@ -35,14 +40,14 @@ public class Cheetah extends Animal
     // The maximum stamina of an cheetah.
     private static final int MAX_STAMINA = 15;
     // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    private static final Random rand = Randomizer.getRandom(Randomizer.BREED);
     
     // Individual characteristics (instance fields).
 
     // The cheetah's stamina.
-    private int stamina;
+    int stamina;
     // The cheetah's age.
-    private int age;
+    int age;
 
     /**
      * Create a cheetah. A cheetah can be created as a new born (age zero
@@ -53,7 +58,7 @@ public class Cheetah extends Animal
      */
     public Cheetah(boolean randomAge, Location location)
     {
-        super(location);
+        super(location, Species.CHEETAH);
         if(randomAge) {
             age = rand.nextInt(MAX_AGE);
         }
@@ -74,15 +79,9 @@ public class Cheetah extends Animal
      */
     public void act(Field currentField, Field nextFieldState, int time, Weather weather)
     {
-        incrementAge();
-        decrementStamina();
-        if(isAlive()) {
-            if (isInfected()) {
-                // stamina/MAX_STAMINA = stamina percentage
-                disinfect(weather.getTemp(),stamina/MAX_STAMINA);
-                infect(currentField, weather.getTemp());
-                decrementInfectionSteps();
-            }
+        incrementAge(nextFieldState);
+        decrementStamina(nextFieldState);
+        if(isLiving()) {
             if (! isAsleep(time)) {
                 List<Location> freeLocations =
                     nextFieldState.getFreeAdjacentLocations(getLocation());
@@ -91,10 +90,10 @@ public class Cheetah extends Animal
                 }
                 Location nextLocation;
                 if (isActive(time)) {
-                    nextLocation = findFood(currentField, ACTIVE_RANGE);
+                    nextLocation = findFood(currentField, nextFieldState, ACTIVE_RANGE);
                 }
                 else {
-                    nextLocation = findFood(currentField, 1);
+                    nextLocation = findFood(currentField, nextFieldState, 1);
                 }
                 // Move towards a source of food if found.
                 if(nextLocation == null && ! freeLocations.isEmpty()) {
@@ -102,15 +101,48 @@ public class Cheetah extends Animal
                     nextLocation = freeLocations.remove(0);
                 }
                 // See if it was possible to move.
-                if(nextLocation != null) {
+                if(nextLocation != null && nextFieldState.tryPlace(this, nextLocation)) {
                     setLocation(nextLocation);
-                    nextFieldState.placeOrganism(this, nextLocation);
                 }
                 else {
                     // Overcrowding.
+                    nextFieldState.recordEvent(EventBatch.OVERCROWDING, this);
                     setDead();
                 }
             }
+            else {
+                // Asleep: stay where it is.
+                stayInPlace(nextFieldState);
+            }
+        }
+    }
+
+    /**
+     * Return how long the cheetah will sleep for from the given time.
+     * The cheetah wakes early if it would otherwise die in its sleep,
+     * so that it dies at the right step.
+     * @param time The current time of the simulation.
+     * @return The number of hours the cheetah is dormant for.
+     */
+    public int getDormantHours(int time)
+    {
+        int hours = 0;
+        while(hours < 24 && isAsleep((time + hours) % 24)) {
+            hours++;
+        }
+        return Math.max(0, Math.min(hours, Math.min(MAX_AGE - age, stamina - 1)));
+    }
+
+    /**
+     * Age the cheetah by the hours it slept for.
+     * @param hours The number of hours the cheetah was dormant for.
+     */
+    public void wake(int hours)
+    {
+        age += hours;
+        stamina -= hours;
+        if(age > MAX_AGE || stamina <= 0) {
+            setDead();
         }
     }
 
@@ -126,26 +158,51 @@ public class Cheetah extends Animal
 
     /**
      * Increase the age. This could result in the cheetah's death.
+     * @param nextFieldState The new state being built.
      */
-    private void incrementAge()
+    private void incrementAge(Field nextFieldState)
     {
         age++;
         if(age > MAX_AGE) {
+            nextFieldState.recordEvent(EventBatch.OLD_AGE, this);
             setDead();
         }
     }
     
     /**
      * Decrement stamina of this cheetah. This could result in the cheetah's death.
+     * @param nextFieldState The new state being built.
      */
-    private void decrementStamina()
+    private void decrementStamina(Field nextFieldState)
     {
         stamina--;
         if(stamina <= 0) {
+            nextFieldState.recordEvent(EventBatch.STARVATION, this);
             setDead();
         }
     }
     
+    /**
+     * Return the cheetah's stamina as a fraction of its maximum stamina.
+     * @return The stamina level, between 0 and 1.
+     */
+    public double getStaminaLevel()
+    {
+        return (double) stamina / MAX_STAMINA;
+    }
+
+    /**
+     * Gain stamina from eating food.
+     * @param nutrition The nutrition value of the food.
+     */
+    public void feed(int nutrition)
+    {
+        stamina += nutrition;
+        if (stamina > MAX_STAMINA) {
+            stamina = MAX_STAMINA;
+        }
+    }
+
     /**
      * Return the nutrition value of a cheetah. This is the amount of stamina increase when another species eat a cheetah.
      * @return The nutrition constant of a cheetah.
@@ -195,10 +252,11 @@ public class Cheetah extends Animal
      * Look for zebras adjacent to the current location.
      * Only the first live zebra is eaten.
      * @param field The field currently occupied.
+     * @param nextFieldState The new state being built.
      * @param range The range in which the animal can find food.
      * @return Where food was found, or null if it wasn't.
      */
-    private Location findFood(Field field, int range)
+    private Location findFood(Field field, Field nextFieldState, int range)
     {
         List<Location> locations = field.getLocationsInRange(getLocation(), range);
         Iterator<Location> it = locations.iterator();
@@ -206,23 +264,14 @@ public class Cheetah extends Animal
         while(foodLocation == null && it.hasNext()) {
             Location loc = it.next();
             Organism organism = field.getOrganismAt(loc);
-            if(organism instanceof Hyena hyena) {
-                if(hyena.isAlive()) {
-                    hyena.setDead();
-                    stamina += Hyena.getNutrition();
+            if(organism != null && organism.isAlive()) {
+                int nutrition = Species.getNutrition(Species.CHEETAH, organism.getSpecies());
+                if(nutrition > 0) {
+                    nextFieldState.recordEvent(EventBatch.PREDATION, organism, getSpecies());
+                    nextFieldState.eat(this, organism, loc, nutrition);
                     foodLocation = loc;
                 }
             }
-            if(organism instanceof Zebra zebra) {
-                if(zebra.isAlive()) {
-                    zebra.setDead();
-                    stamina += Zebra.getNutrition();
-                    foodLocation = loc;
-                }
-            }
-        }
-        if (stamina > MAX_STAMINA) {
-            stamina = MAX_STAMINA;
         }
         return foodLocation;
     }
@@ -237,12 +286,14 @@ public class Cheetah extends Animal
     {
         // New cheetahes are born into adjacent locations.
         // Get a list of adjacent free locations.
-        int births = breed();
+        int births = breed(currentField.getParameters().getBreedingProbability(Species.CHEETAH));
         if(births > 0 && canMate(currentField, weather.getVisibility())) {
             for (int b = 0; b < births && ! freeLocations.isEmpty(); b++) {
                 Location loc = freeLocations.remove(0);
                 Cheetah young = new Cheetah(false, loc);
-                nextFieldState.placeOrganism(young, loc);
+                if(nextFieldState.tryPlace(young, loc)) {
+                    nextFieldState.recordEvent(EventBatch.BIRTH, young);
+                }
             }
         }
     }
@@ -250,12 +301,13 @@ public class Cheetah extends Animal
     /**
      * Generate a number representing the number of births,
      * if it can breed.
+     * @param breedingProbability The likelihood of breeding.
      * @return The number of births (may be zero).
      */
-    private int breed()
+    private int breed(double breedingProbability)
     {
         int births;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
+        if(canBreed() && rand.nextDouble() <= breedingProbability) {
             births = rand.nextInt(MAX_LITTER_SIZE) + 1;
         }
         else {
@@ -286,13 +338,36 @@ public class Cheetah extends Animal
         while(mateLocation == null && it.hasNext()) {
             Location loc = it.next();
             Organism organism = field.getOrganismAt(loc);
-            if(organism instanceof Cheetah cheetah) {
-                if(cheetah.getSex() != getSex()) {
-                    return true;
-                }
+            if(organism != null && organism.getSpecies() == Species.CHEETAH
+                    && organism.getSex() != getSex()) {
+                return true;
             }
         }
         return false;
     }
 
-}
\ No newline at end of file
+    /**
+     * Write the cheetah's state, apart from its location.
+     * @param out Where to write the state.
+     * @throws IOException If the state cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException
+    {
+        super.writeState(out);
+        out.writeShort(age);
+        out.writeByte(stamina);
+    }
+
+    /**
+     * Take on a live state written by writeState, at the given location.
+     * @param in Where to read the state from.
+     * @param location The cheetah's new location.
+     * @throws IOException If the state cannot be read.
+     */
+    public void readState(DataInput in, Location location) throws IOException
+    {
+        super.readState(in, location);
+        age = in.readShort();
+        stamina = in.readByte();
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+
+/**
+ * The intents one worker's organisms emit while they act against a
+ * ProposalField. Each command is a row of parallel arrays, so recording
+ * one costs a few array stores and the buffer can be reused step after
+ * step. Every command carries the priority of the organism that emitted
+ * it: the index of the position that organism started the step in.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class CommandBuffer
+{
+    // An organism moves to, or stays at, a position.
+    public static final int MOVE = 0;
+    // A newborn is placed at a position.
+    public static final int BIRTH = 1;
+    // An animal eats the organism at a position.
+    public static final int EAT = 2;
+    // The number of commands a new buffer has room for.
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The kind of each command: MOVE, BIRTH or EAT.
+    private int[] ops;
+    // The position (row * width + col) each command targets.
+    private int[] targets;
+    // The priority of the organism that emitted each command.
+    private int[] priorities;
+    // The nutrition gained by each EAT command.
+    private int[] amounts;
+    // The organism moved, born, or eating in each command.
+    private Organism[] subjects;
+    // The organism eaten by each EAT command.
+    private Organism[] objects;
+    // The number of commands recorded.
+    private int size;
+
+    // The organism currently acting on this worker, or null if none.
+    private Organism actor;
+    // The priority of the current actor.
+    private int actorPriority;
+    // Whether the current actor's death has been recorded.
+    private boolean actorDead;
+    // The organisms that have acted on this worker since the last clear.
+    private Organism[] actors;
+    // The number of organisms that have acted.
+    private int actorCount;
+
+    /**
+     * Create an empty command buffer.
+     */
+    public CommandBuffer()
+    {
+        ops = new int[INITIAL_CAPACITY];
+        targets = new int[INITIAL_CAPACITY];
+        priorities = new int[INITIAL_CAPACITY];
+        amounts = new int[INITIAL_CAPACITY];
+        subjects = new Organism[INITIAL_CAPACITY];
+        objects = new Organism[INITIAL_CAPACITY];
+        actors = new Organism[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Set the organism whose commands are recorded from now on. The
+     * organism holds back its own death and move until releaseActors.
+     * @param actor The organism about to act, or null when none is.
+     * @param priority The index of the position it started the step in.
+     */
+    public void setActor(Organism actor, int priority)
+    {
+        this.actor = actor;
+        this.actorPriority = priority;
+        this.actorDead = false;
+        if(actor != null) {
+            if(actorCount == actors.length) {
+                actors = Arrays.copyOf(actors, actorCount * 2);
+            }
+            actors[actorCount++] = actor;
+            actor.holdChanges();
+        }
+    }
+
+    /**
+     * Note that the current actor has died.
+     * @return true the first time for the current actor, false after.
+     */
+    public boolean recordActorDeath()
+    {
+        boolean first = ! actorDead;
+        actorDead = true;
+        return first;
+    }
+
+    /**
+     * Apply the deaths and moves held back by the organisms that have
+     * acted on this worker.
+     */
+    public void releaseActors()
+    {
+        for(int a = 0; a < actorCount; a++) {
+            actors[a].releaseChanges();
+        }
+    }
+
+    /**
+     * Return the organism currently acting on this worker.
+     * @return The current actor, or null if none is acting.
+     */
+    public Organism getActor()
+    {
+        return actor;
+    }
+
+    /**
+     * Record a command for the current actor.
+     * @param op MOVE, BIRTH or EAT.
+     * @param target The position the command targets.
+     * @param subject The organism moved, born, or eating.
+     * @param object The organism eaten, or null.
+     * @param amount The nutrition gained, or zero.
+     */
+    public void add(int op, int target, Organism subject, Organism object, int amount)
+    {
+        if(size == ops.length) {
+            grow();
+        }
+        ops[size] = op;
+        targets[size] = target;
+        priorities[size] = actorPriority;
+        amounts[size] = amount;
+        subjects[size] = subject;
+        objects[size] = object;
+        size++;
+    }
+
+    /**
+     * Return the number of commands recorded.
+     * @return The number of commands.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param i The index of a command.
+     * @return The kind of the command.
+     */
+    public int getOp(int i)
+    {
+        return ops[i];
+    }
+
+    /**
+     * @param i The index of a command.
+     * @return The position the command targets.
+     */
+    public int getTarget(int i)
+    {
+        return targets[i];
+    }
+
+    /**
+     * @param i The index of a command.
+     * @return The priority of the organism that emitted the command.
+     */
+    public int getPriority(int i)
+    {
+        return priorities[i];
+    }
+
+    /**
+     * @param i The index of a command.
+     * @return The nutrition gained by the command.
+     */
+    public int getAmount(int i)
+    {
+        return amounts[i];
+    }
+
+    /**
+     * @param i The index of a command.
+     * @return The organism moved, born, or eating.
+     */
+    public Organism getSubject(int i)
+    {
+        return subjects[i];
+    }
+
+    /**
+     * @param i The index of a command.
+     * @return The organism eaten, or null.
+     */
+    public Organism getObject(int i)
+    {
+        return objects[i];
+    }
+
+    /**
+     * Forget every command, keeping the arrays for reuse.
+     */
+    public void clear()
+    {
+        Arrays.fill(subjects, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        Arrays.fill(actors, 0, actorCount, null);
+        size = 0;
+        actorCount = 0;
+        actor = null;
+    }
+
+    /**
+     * Double the capacity of the buffer.
+     */
+    private void grow()
+    {
+        int capacity = ops.length * 2;
+        ops = Arrays.copyOf(ops, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        subjects = Arrays.copyOf(subjects, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * A field whose positions can be claimed by several threads at once,
+ * without locks.
+ * Every placement carries a priority. When two placements claim the
+ * same live position, the one with the lower priority value keeps it,
+ * whichever thread got there first; a position holding a dead organism
+ * is always free to claim. Step engines give each organism's placements
+ * the index (row * width + col) of the position it started the step in,
+ * so the lowest starting index wins every conflict, whichever thread
+ * reaches it first. A whole step is only reproducible if the engine
+ * also binds each act's random stream, as ParallelStepEngine does.
+ *
+ * Organisms move and place their young with tryPlace. An animal that
+ * loses its claim dies of overcrowding, and a newborn that loses is
+ * not born. An organism whose claim is later replaced by one with a
+ * lower priority is recorded as overcrowded and is no longer in the
+ * field, so it does not act again.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class ConcurrentField extends Field
+{
+    // The priority of placements made outside of any organism's act.
+    // It loses against every organism.
+    public static final int NO_PRIORITY = Integer.MAX_VALUE;
+    // The priority of organisms carried forward. They keep their place
+    // against every organism while they are alive.
+    public static final int CARRIED_PRIORITY = Integer.MIN_VALUE;
+
+    // The priority of the placements made by each thread's current actor.
+    private static final ThreadLocal<int[]> actor =
+        ThreadLocal.withInitial(() -> new int[] { NO_PRIORITY });
+
+    // The claim on each position, indexed by row * width + col.
+    private final AtomicReferenceArray<Claim> claims;
+    // The organisms stored into the field one at a time, from any thread.
+    private final Queue<Organism> stored;
+
+    /**
+     * A claim on a position.
+     * @param organism The organism holding the position.
+     * @param priority The priority it was placed with.
+     * @param carried Whether it was carried forward rather than placed.
+     */
+    private record Claim(Organism organism, int priority, boolean carried)
+    {
+    }
+
+    /**
+     * Represent a concurrent field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ConcurrentField(int depth, int width)
+    {
+        super(depth, width, false);
+        claims = new AtomicReferenceArray<>(depth * width);
+        stored = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Set the priority of the placements the calling thread makes from
+     * now on, normally the index of the position the organism about to
+     * act started the step in.
+     * @param priority The priority; lower values win conflicts.
+     */
+    public static void setActor(int priority)
+    {
+        actor.get()[0] = priority;
+    }
+
+    /**
+     * Forget the calling thread's actor, so its placements lose every
+     * conflict again.
+     */
+    public static void clearActor()
+    {
+        actor.get()[0] = NO_PRIORITY;
+    }
+
+    /**
+     * Claim a position for an organism with the calling thread's
+     * current priority.
+     * @param organism The organism to be placed.
+     * @param location Where to place the organism.
+     * @return true if the organism holds the position, false if a live
+     *         organism with a lower priority value already does.
+     */
+    public boolean tryPlace(Organism organism, Location location)
+    {
+        return tryPlace(organism, location, actor.get()[0]);
+    }
+
+    /**
+     * Claim a position for an organism with the given priority.
+     * @param organism The organism to be placed.
+     * @param location Where to place the organism.
+     * @param priority The priority of the claim; lower values win.
+     * @return true if the organism holds the position, false if a live
+     *         organism with a lower priority value already does.
+     */
+    public boolean tryPlace(Organism organism, Location location, int priority)
+    {
+        int index = location.row() * getWidth() + location.col();
+        boolean placed = claim(index, new Claim(organism, priority, false));
+        if(placed) {
+            recordStored(organism);
+            markOccupied(location.row(), location.col());
+            positionsChanged();
+        }
+        return placed;
+    }
+
+    /**
+     * Note an organism stored into the field, from any thread.
+     * @param organism The organism stored.
+     */
+    protected void recordStored(Organism organism)
+    {
+        stored.add(organism);
+    }
+
+    /**
+     * Empty the field.
+     */
+    public void clear()
+    {
+        super.clear();
+        stored.clear();
+    }
+
+    /**
+     * Return every organism that has been stored into the field.
+     * @return The organisms, in no particular order.
+     */
+    protected Stream<Organism> storedOrganisms()
+    {
+        return Stream.concat(super.storedOrganisms(), stored.stream());
+    }
+
+    /**
+     * Return the organism at the given index.
+     * @param index The position's row * width + col.
+     * @return The organism there, or null if there is none.
+     */
+    protected Organism getCell(int index)
+    {
+        Claim claim = claims.get(index);
+        return claim == null ? null : claim.organism();
+    }
+
+    /**
+     * Return whether the organism at the given index was carried forward.
+     * @param index The position's row * width + col.
+     * @return true if the organism there was carried forward.
+     */
+    protected boolean isCarried(int index)
+    {
+        Claim claim = claims.get(index);
+        return claim != null && claim.carried();
+    }
+
+    /**
+     * Store an organism at the given index, subject to the conflict rule.
+     * Placements use the calling thread's current priority, organisms
+     * carried forward use CARRIED_PRIORITY, and emptying a position
+     * always succeeds.
+     * @param index The position's row * width + col.
+     * @param organism The organism to store, or null to empty the position.
+     * @param carriedForward Whether the organism is carried forward.
+     */
+    protected void storeCell(int index, Organism organism, boolean carriedForward)
+    {
+        if(organism == null) {
+            claims.set(index, null);
+        }
+        else {
+            int priority = carriedForward ? CARRIED_PRIORITY : actor.get()[0];
+            if(! claim(index, new Claim(organism, priority, carriedForward)) && organism.isAlive()) {
+                // Placed where it cannot stay.
+                recordEvent(EventBatch.OVERCROWDING, organism);
+            }
+        }
+    }
+
+    /**
+     * Try to put a claim on a position, retrying until the claim either
+     * wins or loses against whatever is there.
+     * @param index The position's row * width + col.
+     * @param claim The new claim.
+     * @return true if the claim now holds the position.
+     */
+    private boolean claim(int index, Claim claim)
+    {
+        while(true) {
+            Claim current = claims.get(index);
+            if(current != null && current.organism().isAlive()
+                    && current.priority() < claim.priority()) {
+                return false;
+            }
+            if(claims.compareAndSet(index, current, claim)) {
+                if(current != null && current.organism() != claim.organism()
+                        && current.organism().isAlive()) {
+                    // The organism there has lost its place.
+                    recordEvent(EventBatch.OVERCROWDING, current.organism());
+                }
+                return true;
+            }
+        }
+    }
+}
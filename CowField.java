@@ -0,0 +1,212 @@
+/**
+ * A field that starts out sharing the positions and organisms of
+ * another, frozen field, and copies them a tile at a time as they are
+ * used. Since an organism handed out by the field may be changed by
+ * whoever receives it, a tile is copied, organisms and all, the first
+ * time any of its positions is read or written. Tiles that are never
+ * used are never copied, and the frozen field is never changed.
+ *
+ * Simulators use this to fork: the parent and the child each get a
+ * CowField over the state at the fork, so forking takes no more than
+ * making two small tile tables.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class CowField extends Field
+{
+    // The width and depth of a tile.
+    private static final int TILE_SIZE = 32;
+
+    // The frozen field the positions start out from.
+    private final Field base;
+    // The number of tiles across the field.
+    private final int tilesAcross;
+    // The organisms of each copied tile, indexed by tile, then by
+    // position within the tile; null for tiles not yet copied.
+    private final Organism[][] tiles;
+    // Whether each position of each copied tile is carried forward.
+    private final boolean[][] carriedTiles;
+
+    /**
+     * Create a field sharing the state of another.
+     * @param base The field to share. It must not change from now on.
+     */
+    public CowField(Field base)
+    {
+        super(base.getDepth(), base.getWidth(), false);
+        this.base = base;
+        tilesAcross = (base.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (base.getDepth() + TILE_SIZE - 1) / TILE_SIZE;
+        tiles = new Organism[tilesAcross * tilesDown][];
+        carriedTiles = new boolean[tiles.length][];
+        setParameters(base.getParameters());
+    }
+
+    /**
+     * Return the frozen field the positions start out from.
+     * @return The field.
+     */
+    public Field getBase()
+    {
+        return base;
+    }
+
+    /**
+     * Return this field's own copy of an organism of the frozen field.
+     * @param original An organism of the frozen field.
+     * @return The copy, or the organism itself if it is no longer in
+     *         the field (e.g. it has died).
+     */
+    public Organism own(Organism original)
+    {
+        Location location = original.getLocation();
+        if(location == null || base.getOrganismAt(location) != original) {
+            return original;
+        }
+        return getOrganismAt(location);
+    }
+
+    /**
+     * Return the organism stored at the given index, copying its tile
+     * first if need be.
+     * @param index The position's row * width + col.
+     * @return The organism there, or null if there is none.
+     */
+    @Override
+    protected Organism getCell(int index)
+    {
+        int tile = tileOf(index);
+        if(tiles[tile] == null) {
+            copyTile(tile);
+        }
+        return tiles[tile][offsetOf(index)];
+    }
+
+    /**
+     * Return whether the organism at the given index was carried forward.
+     * @param index The position's row * width + col.
+     * @return true if the organism there was carried forward.
+     */
+    @Override
+    protected boolean isCarried(int index)
+    {
+        int tile = tileOf(index);
+        if(carriedTiles[tile] == null) {
+            return base.isCarried(index);
+        }
+        return carriedTiles[tile][offsetOf(index)];
+    }
+
+    /**
+     * Store an organism at the given index, copying its tile first if
+     * need be.
+     * @param index The position's row * width + col.
+     * @param organism The organism to store, or null to empty the position.
+     * @param carriedForward Whether the organism is carried forward.
+     */
+    @Override
+    protected void storeCell(int index, Organism organism, boolean carriedForward)
+    {
+        int tile = tileOf(index);
+        if(tiles[tile] == null) {
+            copyTile(tile);
+        }
+        tiles[tile][offsetOf(index)] = organism;
+        carriedTiles[tile][offsetOf(index)] = carriedForward;
+    }
+
+    /**
+     * Return whether a region may hold organisms, either stored into this
+     * field or shared from the frozen one.
+     * @param region The region's index, in row-major order of the regions.
+     * @return true if the region may hold organisms.
+     */
+    @Override
+    protected boolean isRegionOccupied(int region)
+    {
+        return super.isRegionOccupied(region) || base.isRegionOccupied(region);
+    }
+
+    /**
+     * Count the live organisms of each species in the field: those of
+     * the frozen field, corrected for the tiles that have been copied.
+     * @return The counts, indexed by species id.
+     */
+    @Override
+    public int[] countSpecies()
+    {
+        int[] counts = base.countSpecies();
+        for(int tile = 0; tile < tiles.length; tile++) {
+            if(tiles[tile] == null) {
+                continue;
+            }
+            int firstRow = tile / tilesAcross * TILE_SIZE;
+            int firstCol = tile % tilesAcross * TILE_SIZE;
+            int lastRow = Math.min(firstRow + TILE_SIZE, getDepth());
+            int lastCol = Math.min(firstCol + TILE_SIZE, getWidth());
+            for(int row = firstRow; row < lastRow; row++) {
+                for(int col = firstCol; col < lastCol; col++) {
+                    Organism original = base.getCell(row * getWidth() + col);
+                    if(original != null && original.isAlive()) {
+                        counts[original.getSpecies()]--;
+                    }
+                    Organism organism = tiles[tile][(row - firstRow) * TILE_SIZE + col - firstCol];
+                    if(organism != null && organism.isAlive()) {
+                        counts[organism.getSpecies()]++;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Copy a tile of the frozen field, with copies of its organisms.
+     * @param tile The index of the tile.
+     */
+    private void copyTile(int tile)
+    {
+        Organism[] organisms = new Organism[TILE_SIZE * TILE_SIZE];
+        boolean[] carried = new boolean[TILE_SIZE * TILE_SIZE];
+        int firstRow = tile / tilesAcross * TILE_SIZE;
+        int firstCol = tile % tilesAcross * TILE_SIZE;
+        int lastRow = Math.min(firstRow + TILE_SIZE, getDepth());
+        int lastCol = Math.min(firstCol + TILE_SIZE, getWidth());
+        for(int row = firstRow; row < lastRow; row++) {
+            for(int col = firstCol; col < lastCol; col++) {
+                int index = row * getWidth() + col;
+                int offset = (row - firstRow) * TILE_SIZE + col - firstCol;
+                Organism organism = base.getCell(index);
+                organisms[offset] = organism != null ? organism.copy() : null;
+                carried[offset] = base.isCarried(index);
+            }
+        }
+        tiles[tile] = organisms;
+        carriedTiles[tile] = carried;
+    }
+
+    /**
+     * Return the tile holding a position.
+     * @param index The position's row * width + col.
+     * @return The index of the tile.
+     */
+    private int tileOf(int index)
+    {
+        int row = index / getWidth();
+        int col = index % getWidth();
+        return row / TILE_SIZE * tilesAcross + col / TILE_SIZE;
+    }
+
+    /**
+     * Return where a position is within its tile.
+     * @param index The position's row * width + col.
+     * @return The offset within the tile.
+     */
+    private int offsetOf(int index)
+    {
+        int row = index / getWidth();
+        int col = index % getWidth();
+        return row % TILE_SIZE * TILE_SIZE + col % TILE_SIZE;
+    }
+}
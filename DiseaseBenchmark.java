@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measure how much faster Disease.countExposure counts each cell's
+ * infected neighbours than the loops it replaced, which tested for the
+ * edge of the field at every cell. Both are run on the same random
+ * infection maps, and their counts must be exactly the same: first on
+ * a few small fields whose edges meet, then on every pass timed.
+ *
+ * The arguments are the depth and width of the field, the number of
+ * passes per round, the share of cells infected and the seed, all
+ * optional.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class DiseaseBenchmark
+{
+    // The defaults of the arguments.
+    private static final int DEFAULT_DEPTH = 1000;
+    private static final int DEFAULT_WIDTH = 1000;
+    private static final int DEFAULT_PASSES = 200;
+    private static final double DEFAULT_INFECTED = 0.1;
+    private static final long DEFAULT_SEED = 42;
+    // The number of times the passes are repeated; the first warms up.
+    private static final int ROUNDS = 6;
+    // The small fields checked before timing, as depth and width.
+    private static final int[][] SHAPES = { { 1, 1 }, { 1, 7 }, { 7, 1 }, { 2, 2 }, { 3, 4 }, { 5, 3 } };
+
+    /**
+     * Run the benchmark.
+     * @param args The depth, width, passes per round, share infected
+     *             and seed, all optional.
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WIDTH;
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PASSES;
+        double share = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_INFECTED;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+
+        Random rand = new Random(seed);
+        for(int[] shape : SHAPES) {
+            if(! same(infectionMap(shape[0], shape[1], share, rand), shape[0], shape[1])) {
+                return;
+            }
+        }
+        System.out.println("Field " + depth + "x" + width + ", " + passes + " passes, "
+                           + share + " infected, seed " + seed);
+        int cells = depth * width;
+        int[] rowSums = new int[cells];
+        int[] exposure = new int[cells];
+        int[] expected = new int[cells];
+        for(int round = 0; round < ROUNDS; round++) {
+            byte[] infected = infectionMap(depth, width, share, rand);
+            long start = System.nanoTime();
+            for(int pass = 0; pass < passes; pass++) {
+                countExposureBefore(infected, rowSums, expected, depth, width);
+            }
+            long before = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int pass = 0; pass < passes; pass++) {
+                Disease.countExposure(infected, rowSums, exposure, depth, width);
+            }
+            long after = System.nanoTime() - start;
+            if(! Arrays.equals(expected, exposure)) {
+                System.out.println("The counts differ in round " + round + ".");
+                return;
+            }
+            System.out.printf("%s: before %.3f ms, after %.3f ms per pass, speedup %.2fx%n",
+                              round == 0 ? "Warm-up" : "Round " + round,
+                              before / 1e6 / passes, after / 1e6 / passes, (double) before / after);
+        }
+    }
+
+    /**
+     * Return whether both ways of counting give the same counts for a map.
+     * @param infected The infection map.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @return true if the counts are the same.
+     */
+    private static boolean same(byte[] infected, int depth, int width)
+    {
+        int cells = depth * width;
+        int[] expected = new int[cells];
+        int[] exposure = new int[cells];
+        countExposureBefore(infected, new int[cells], expected, depth, width);
+        Disease.countExposure(infected, new int[cells], exposure, depth, width);
+        if(! Arrays.equals(expected, exposure)) {
+            System.out.println("The counts differ on a " + depth + "x" + width + " field: "
+                               + Arrays.toString(expected) + " and " + Arrays.toString(exposure));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Create a random infection map.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param share The probability that a cell is infected.
+     * @param rand The generator to draw from.
+     * @return 1 for each infected cell, 0 elsewhere.
+     */
+    private static byte[] infectionMap(int depth, int width, double share, Random rand)
+    {
+        byte[] infected = new byte[depth * width];
+        for(int i = 0; i < infected.length; i++) {
+            infected[i] = (byte) (rand.nextDouble() < share ? 1 : 0);
+        }
+        return infected;
+    }
+
+    /**
+     * Count the infected neighbours of every cell as Disease did before
+     * its loops were made branch-free, testing for the edge at every cell.
+     * @param infected 1 where a cell is infected, 0 elsewhere.
+     * @param rowSums Filled with the horizontal sums.
+     * @param exposure Filled with the number of infected neighbours.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    private static void countExposureBefore(byte[] infected, int[] rowSums, int[] exposure,
+                                            int depth, int width)
+    {
+        for(int row = 0; row < depth; row++) {
+            int start = row * width;
+            for(int col = 0; col < width; col++) {
+                int sum = infected[start + col];
+                if(col > 0) {
+                    sum += infected[start + col - 1];
+                }
+                if(col < width - 1) {
+                    sum += infected[start + col + 1];
+                }
+                rowSums[start + col] = sum;
+            }
+        }
+        for(int row = 0; row < depth; row++) {
+            int start = row * width;
+            for(int col = 0; col < width; col++) {
+                int i = start + col;
+                int sum = rowSums[i] - infected[i];
+                if(row > 0) {
+                    sum += rowSums[i - width];
+                }
+                if(row < depth - 1) {
+                    sum += rowSums[i + width];
+                }
+                exposure[i] = sum;
+            }
+        }
+    }
+}
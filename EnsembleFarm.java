@@ -0,0 +1,267 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Run a queue of independent simulations on several worker processes
+ * (see FarmWorker), each with its own heap and garbage collector, so a
+ * large run's collections do not hold up the others. Each worker takes
+ * the next job from the queue as soon as it has finished its last, so
+ * runs of mixed sizes keep every worker busy. The farm hands out jobs
+ * and collects results over loopback sockets, and passes each result on
+ * as soon as it arrives. If a worker fails, its job goes back on the
+ * queue, and the workers still running wait for it until every result
+ * is in.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class EnsembleFarm
+{
+    // How long to wait for the workers to start and connect, in milliseconds.
+    private static final long START_TIMEOUT = 60000;
+
+    /**
+     * A simulation to run.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param steps The maximum number of steps. The run ends sooner if
+     *              the field stops being viable.
+     * @param seed The seed of the run.
+     * @param parameters The parameters of the run.
+     */
+    public record Job(int depth, int width, int steps, long seed, Parameters parameters)
+    {
+    }
+
+    /**
+     * How a job ended.
+     * @param job The id of the job.
+     * @param steps The number of steps run.
+     * @param counts The final population of each species, indexed by species id.
+     */
+    public record Result(int job, int steps, int[] counts)
+    {
+    }
+
+    // The number of worker processes.
+    private final int workers;
+    // The options each worker's Java is started with, e.g. a heap size.
+    private final List<String> options;
+    // The jobs, indexed by id.
+    private final List<Job> jobs;
+
+    /**
+     * Create a farm.
+     * @param workers The number of worker processes.
+     * @param options The options each worker's Java is started with,
+     *                e.g. "-Xmx2g".
+     */
+    public EnsembleFarm(int workers, String... options)
+    {
+        if(workers < 1) {
+            System.out.println("A farm needs at least one worker.");
+            workers = 1;
+        }
+        this.workers = workers;
+        this.options = List.of(options);
+        jobs = new ArrayList<>();
+    }
+
+    /**
+     * Add a job to the queue.
+     * @param job The job.
+     * @return The job's id.
+     */
+    public int submit(Job job)
+    {
+        jobs.add(job);
+        return jobs.size() - 1;
+    }
+
+    /**
+     * Start the workers, let them run every job in the queue, and wait
+     * for them to finish.
+     * @param listener Called with each result as it arrives, one at a time.
+     * @return The results, in order of job id.
+     * @throws IOException If the workers cannot be started, or some jobs
+     *                     could not be run.
+     */
+    public List<Result> run(Consumer<Result> listener) throws IOException
+    {
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for(int id = 0; id < jobs.size(); id++) {
+            queue.add(id);
+        }
+        Result[] results = new Result[jobs.size()];
+        AtomicInteger remaining = new AtomicInteger(jobs.size());
+        List<Process> processes = new ArrayList<>();
+        ExecutorService serving = Executors.newFixedThreadPool(workers);
+        List<Future<?>> served = new ArrayList<>();
+        IOException failure = null;
+        try(ServerSocketChannel server = Loopback.listen()) {
+            List<String> args = List.of(Integer.toString(Loopback.portOf(server)));
+            for(int i = 0; i < workers; i++) {
+                processes.add(Loopback.launch("FarmWorker", options, args));
+            }
+            server.configureBlocking(false);
+            long deadline = System.currentTimeMillis() + START_TIMEOUT;
+            // Workers still starting once the queue is empty are not needed.
+            while(served.size() < workers && ! queue.isEmpty()) {
+                SocketChannel channel = server.accept();
+                if(channel == null) {
+                    checkStarting(processes, deadline);
+                    sleep(10);
+                }
+                else {
+                    Loopback.prepare(channel);
+                    served.add(serving.submit(() -> serve(channel, queue, remaining, results, listener)));
+                }
+            }
+        }
+        catch(IOException e) {
+            failure = e;
+        }
+        finally {
+            for(Future<?> worker : served) {
+                try {
+                    worker.get();
+                }
+                catch(ExecutionException e) {
+                    failure = new IOException("A farm worker failed.", e.getCause());
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            serving.shutdownNow();
+            for(Process process : processes) {
+                process.destroy();
+            }
+        }
+        int missing = (int) Arrays.stream(results).filter(result -> result == null).count();
+        if(missing > 0) {
+            throw new IOException(missing + " of " + results.length + " jobs were not run.",
+                                  failure);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Hand jobs to one worker until every result is in. While the queue
+     * is empty but other workers are still running jobs, the worker
+     * waits, in case one of them fails and its job comes back on the
+     * queue.
+     * @param channel The connection to the worker.
+     * @param queue The ids of the jobs waiting to be run.
+     * @param remaining The number of jobs whose results are not yet in.
+     * @param results Where to store the results.
+     * @param listener Called with each result.
+     * @return null.
+     * @throws IOException If the worker fails.
+     */
+    private Void serve(SocketChannel channel, Queue<Integer> queue, AtomicInteger remaining,
+                       Result[] results, Consumer<Result> listener) throws IOException
+    {
+        try(channel) {
+            // The worker asks for its first job.
+            Loopback.receive(channel);
+            while(remaining.get() > 0) {
+                Integer id = queue.poll();
+                if(id == null) {
+                    sleep(10);
+                    continue;
+                }
+                ByteBuffer reply;
+                try {
+                    Loopback.send(channel, encode(id));
+                    reply = Loopback.receive(channel);
+                }
+                catch(IOException e) {
+                    queue.add(id);
+                    throw e;
+                }
+                int[] counts = new int[Species.COUNT];
+                int job = reply.getInt();
+                int steps = reply.getInt();
+                for(int species = 0; species < Species.COUNT; species++) {
+                    counts[species] = reply.getInt();
+                }
+                Result result = new Result(job, steps, counts);
+                results[job] = result;
+                remaining.decrementAndGet();
+                synchronized(listener) {
+                    listener.accept(result);
+                }
+            }
+            // No more jobs.
+            Loopback.send(channel, new byte[0]);
+        }
+        return null;
+    }
+
+    /**
+     * Encode a job for a worker.
+     * @param id The id of the job.
+     * @return The job's message.
+     * @throws IOException If the job cannot be encoded.
+     */
+    private byte[] encode(int id) throws IOException
+    {
+        Job job = jobs.get(id);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(id);
+        out.writeInt(job.depth());
+        out.writeInt(job.width());
+        out.writeInt(job.steps());
+        out.writeLong(job.seed());
+        job.parameters().writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Check that some of the workers are still running.
+     * @param processes The worker processes.
+     * @param deadline The time by which they must have connected.
+     * @throws IOException If every worker has exited, or time is up.
+     */
+    private void checkStarting(List<Process> processes, long deadline) throws IOException
+    {
+        if(processes.stream().noneMatch(Process::isAlive)) {
+            throw new IOException("Every farm worker has exited.");
+        }
+        if(System.currentTimeMillis() > deadline) {
+            throw new IOException("The farm workers did not connect in time.");
+        }
+    }
+
+    /**
+     * Pause for a while.
+     * @param millisec The time to pause for, in milliseconds.
+     */
+    private void sleep(long millisec)
+    {
+        try {
+            Thread.sleep(millisec);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
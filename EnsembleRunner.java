@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Run many independent simulations of the same configuration at once,
+ * each with its own seed, and summarise how their populations spread.
+ * Every run is a Simulator without a view, drawing only from its own
+ * random stream, so runs do not affect each other whatever thread they
+ * are on. The population of each species is recorded at every step,
+ * and the mean and quantiles at a step can be read at any time, even
+ * while the runs are still going: they cover the runs that have got
+ * that far.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class EnsembleRunner
+{
+    // The size of the field of every run.
+    private final int depth, width;
+    // The number of steps every run goes on for.
+    private final int steps;
+    // The seed of each run.
+    private final long[] seeds;
+    // The population of each species at each step of each run,
+    // indexed [run][step * Species.COUNT + species].
+    private final int[][] counts;
+    // The number of steps each run has recorded, counting the start.
+    private final AtomicIntegerArray progress;
+
+    /**
+     * Create an ensemble.
+     * @param depth Depth of the field of every run.
+     * @param width Width of the field of every run.
+     * @param runs The number of runs.
+     * @param steps The number of steps every run goes on for.
+     * @param seed The seed the runs' own seeds are derived from.
+     */
+    public EnsembleRunner(int depth, int width, int runs, int steps, long seed)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        seeds = new long[runs];
+        counts = new int[runs][(steps + 1) * Species.COUNT];
+        for(int run = 0; run < runs; run++) {
+            seeds[run] = Randomizer.stream(seed, run).nextLong();
+        }
+        progress = new AtomicIntegerArray(runs);
+    }
+
+    /**
+     * Carry out every run on a pool of the given number of threads, and
+     * wait for them all to finish.
+     * @param threads The number of runs to carry out at once.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void run(int threads) throws InterruptedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for(int run = 0; run < seeds.length; run++) {
+                int index = run;
+                results.add(pool.submit(() -> runOne(index)));
+            }
+            for(Future<?> result : results) {
+                result.get();
+            }
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("An ensemble run failed.", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Carry out one run, recording its populations as it goes.
+     * @param run The index of the run.
+     */
+    private void runOne(int run)
+    {
+        Simulator simulator = new Simulator(depth, width, seeds[run], false);
+        record(run, 0, simulator.getField());
+        for(int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+            record(run, step, simulator.getField());
+        }
+    }
+
+    /**
+     * Record the populations of a run at a step.
+     * @param run The index of the run.
+     * @param step The step.
+     * @param field The state of the run's field at that step.
+     */
+    private void record(int run, int step, Field field)
+    {
+        System.arraycopy(field.countSpecies(), 0, counts[run], step * Species.COUNT, Species.COUNT);
+        // Publishes the counts to readers on other threads.
+        progress.set(run, step + 1);
+    }
+
+    /**
+     * Return the number of runs that have reached the given step.
+     * @param step The step.
+     * @return The number of runs.
+     */
+    public int getRunsAt(int step)
+    {
+        int reached = 0;
+        for(int run = 0; run < seeds.length; run++) {
+            if(progress.get(run) > step) {
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Return the mean population of a species at a step, over the runs
+     * that have reached it.
+     * @param step The step.
+     * @param species The species id.
+     * @return The mean population, or NaN if no run has reached the step.
+     */
+    public double getMean(int step, int species)
+    {
+        int[] values = valuesAt(step, species);
+        if(values.length == 0) {
+            return Double.NaN;
+        }
+        long sum = 0;
+        for(int value : values) {
+            sum += value;
+        }
+        return (double) sum / values.length;
+    }
+
+    /**
+     * Return a quantile of the population of a species at a step, over
+     * the runs that have reached it, interpolating between the nearest
+     * runs.
+     * @param step The step.
+     * @param species The species id.
+     * @param q The quantile, between 0 and 1, e.g. 0.05 for the 5% point.
+     * @return The quantile, or NaN if no run has reached the step.
+     */
+    public double getQuantile(int step, int species, double q)
+    {
+        int[] values = valuesAt(step, species);
+        if(values.length == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(values);
+        double position = q * (values.length - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(below + 1, values.length - 1);
+        return values[below] + (position - below) * (values[above] - values[below]);
+    }
+
+    /**
+     * Print the mean and the 5% to 95% band of every species at a step.
+     * @param step The step.
+     */
+    public void printBands(int step)
+    {
+        StringBuilder line = new StringBuilder("Step " + step + " (" + getRunsAt(step) + " runs):");
+        for(int species = 0; species < Species.COUNT; species++) {
+            line.append(String.format(" %s: %.1f [%.0f, %.0f]", Species.getName(species),
+                                      getMean(step, species),
+                                      getQuantile(step, species, 0.05),
+                                      getQuantile(step, species, 0.95)));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Collect the population of a species at a step from every run that
+     * has reached it.
+     * @param step The step.
+     * @param species The species id.
+     * @return The populations, one per run.
+     */
+    private int[] valuesAt(int step, int species)
+    {
+        int[] values = new int[seeds.length];
+        int found = 0;
+        for(int run = 0; run < seeds.length; run++) {
+            if(progress.get(run) > step) {
+                values[found++] = counts[run][step * Species.COUNT + species];
+            }
+        }
+        return Arrays.copyOf(values, found);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * The events of one type that happened in one step of a simulation,
+ * held in a single int array rather than as one object per event.
+ * Each event has the species of the organism it happened to, the row
+ * and column where it happened, and one more value whose meaning
+ * depends on the type: the species of the eater for PREDATION, and -1
+ * for every other type.
+ *
+ * Events are collected by an EventRecorder and handed to the listeners
+ * of their type once the step is complete.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class EventBatch
+{
+    // The types of event.
+    // An organism was born.
+    public static final int BIRTH = 0;
+    // An organism was eaten.
+    public static final int PREDATION = 1;
+    // An animal ran out of stamina.
+    public static final int STARVATION = 2;
+    // An organism passed its maximum age.
+    public static final int OLD_AGE = 3;
+    // An organism found its place taken, or a plant was trampled.
+    public static final int OVERCROWDING = 4;
+    // An animal caught the disease.
+    public static final int INFECTION = 5;
+    // An animal died of the disease.
+    public static final int DISEASE = 6;
+
+    // The number of event types.
+    public static final int TYPE_COUNT = 7;
+
+    // The number of ints each event takes up.
+    static final int FIELDS = 4;
+
+    // The names of the types, indexed by type.
+    private static final String[] NAMES = {
+        "Birth", "Predation", "Starvation", "Old age", "Overcrowding", "Infection", "Disease" };
+
+    // The type of the events.
+    private final int type;
+    // The step they happened in.
+    private final int step;
+    // The events, FIELDS ints each: species, row, column, other.
+    private final int[] data;
+    // The number of events.
+    private final int size;
+
+    /**
+     * Create a batch of events.
+     * @param type The type of the events.
+     * @param step The step they happened in.
+     * @param data The events, FIELDS ints each. The batch keeps the array.
+     * @param size The number of events.
+     */
+    EventBatch(int type, int step, int[] data, int size)
+    {
+        this.type = type;
+        this.step = step;
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Return the name of an event type.
+     * @param type The type.
+     * @return The name, e.g. "Birth".
+     */
+    public static String getName(int type)
+    {
+        return NAMES[type];
+    }
+
+    /**
+     * Return the type of the events.
+     * @return One of the types defined above.
+     */
+    public int getType()
+    {
+        return type;
+    }
+
+    /**
+     * Return the step the events happened in.
+     * @return The step.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Return the number of events.
+     * @return The number of events.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the species of the organism an event happened to.
+     * @param event The index of the event.
+     * @return The species id.
+     */
+    public int getSpecies(int event)
+    {
+        return data[event * FIELDS];
+    }
+
+    /**
+     * Return the row where an event happened.
+     * @param event The index of the event.
+     * @return The row.
+     */
+    public int getRow(int event)
+    {
+        return data[event * FIELDS + 1];
+    }
+
+    /**
+     * Return the column where an event happened.
+     * @param event The index of the event.
+     * @return The column.
+     */
+    public int getCol(int event)
+    {
+        return data[event * FIELDS + 2];
+    }
+
+    /**
+     * Return the type-specific value of an event: the species of the
+     * eater for PREDATION, otherwise -1.
+     * @param event The index of the event.
+     * @return The value.
+     */
+    public int getOther(int event)
+    {
+        return data[event * FIELDS + 3];
+    }
+
+    /**
+     * Count the events of each species.
+     * @return The counts, indexed by species id.
+     */
+    public int[] countBySpecies()
+    {
+        int[] counts = new int[Species.COUNT];
+        for(int event = 0; event < size; event++) {
+            counts[data[event * FIELDS]]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Collect the events of a simulation's steps and hand them, a batch per
+ * type per step, to the listeners of each type.
+ *
+ * Organisms record events through the field they are building (see
+ * Field.recordEvent), which passes them on to the recorder it was given.
+ * A simulator only gives its fields a recorder while some listener is
+ * registered, so events cost nothing when nobody listens, and only the
+ * types someone listens to are kept. Each thread records into a buffer
+ * of its own, so organisms acting on several threads at once never wait
+ * for each other.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class EventRecorder
+{
+    // The events each buffer starts out with room for, per type.
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The listeners of each type, indexed by type.
+    private final List<List<Consumer<EventBatch>>> listeners;
+    // Whether anybody listens to each type, indexed by type.
+    private final boolean[] wanted;
+    // Every thread's buffer.
+    private final Queue<Buffer> buffers;
+    // The calling thread's buffer.
+    private final ThreadLocal<Buffer> buffer;
+
+    /**
+     * The events one thread has recorded since the last step was published.
+     */
+    private static class Buffer
+    {
+        // The events of each type, EventBatch.FIELDS ints each.
+        private final int[][] data;
+        // The number of events of each type.
+        private final int[] sizes;
+
+        /**
+         * Create an empty buffer.
+         */
+        Buffer()
+        {
+            data = new int[EventBatch.TYPE_COUNT][INITIAL_CAPACITY * EventBatch.FIELDS];
+            sizes = new int[EventBatch.TYPE_COUNT];
+        }
+
+        /**
+         * Add an event.
+         * @param type The type of event.
+         * @param species The species of the organism it happened to.
+         * @param row The row where it happened.
+         * @param col The column where it happened.
+         * @param other The type-specific value.
+         */
+        void add(int type, int species, int row, int col, int other)
+        {
+            int start = sizes[type] * EventBatch.FIELDS;
+            if(start == data[type].length) {
+                data[type] = Arrays.copyOf(data[type], start * 2);
+            }
+            int[] events = data[type];
+            events[start] = species;
+            events[start + 1] = row;
+            events[start + 2] = col;
+            events[start + 3] = other;
+            sizes[type]++;
+        }
+    }
+
+    /**
+     * Create a recorder with no listeners.
+     */
+    public EventRecorder()
+    {
+        listeners = new ArrayList<>();
+        for(int type = 0; type < EventBatch.TYPE_COUNT; type++) {
+            listeners.add(new ArrayList<>());
+        }
+        wanted = new boolean[EventBatch.TYPE_COUNT];
+        buffers = new ConcurrentLinkedQueue<>();
+        buffer = ThreadLocal.withInitial(() -> {
+            Buffer created = new Buffer();
+            buffers.add(created);
+            return created;
+        });
+    }
+
+    /**
+     * Register a listener for the events of a type. Listeners are called
+     * on the simulation's thread, once per step in which events of their
+     * type happened, after the step is complete.
+     * @param type The type of event, one of those defined in EventBatch.
+     * @param listener The listener.
+     */
+    public void addListener(int type, Consumer<EventBatch> listener)
+    {
+        if(type < 0 || type >= EventBatch.TYPE_COUNT) {
+            System.out.println("No such event type: " + type);
+            return;
+        }
+        listeners.get(type).add(listener);
+        wanted[type] = true;
+    }
+
+    /**
+     * Remove a listener.
+     * @param type The type of event it was registered for.
+     * @param listener The listener.
+     */
+    public void removeListener(int type, Consumer<EventBatch> listener)
+    {
+        if(type < 0 || type >= EventBatch.TYPE_COUNT) {
+            System.out.println("No such event type: " + type);
+            return;
+        }
+        listeners.get(type).remove(listener);
+        wanted[type] = ! listeners.get(type).isEmpty();
+    }
+
+    /**
+     * Return whether any listener is registered.
+     * @return true if somebody listens to some type.
+     */
+    public boolean hasListeners()
+    {
+        for(boolean type : wanted) {
+            if(type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record an event, if anybody listens to its type.
+     * @param type The type of event.
+     * @param species The species of the organism it happened to.
+     * @param row The row where it happened.
+     * @param col The column where it happened.
+     * @param other The type-specific value; see EventBatch.
+     */
+    public void record(int type, int species, int row, int col, int other)
+    {
+        if(wanted[type]) {
+            buffer.get().add(type, species, row, col, other);
+        }
+    }
+
+    /**
+     * Hand the events recorded since the last call to their listeners, a
+     * batch per type, and start afresh. Call once every thread that
+     * records into the step has finished.
+     * @param step The step the events happened in.
+     */
+    public void publish(int step)
+    {
+        for(int type = 0; type < EventBatch.TYPE_COUNT; type++) {
+            int size = 0;
+            for(Buffer recorded : buffers) {
+                size += recorded.sizes[type];
+            }
+            if(size == 0) {
+                continue;
+            }
+            int[] data = new int[size * EventBatch.FIELDS];
+            int start = 0;
+            for(Buffer recorded : buffers) {
+                int length = recorded.sizes[type] * EventBatch.FIELDS;
+                System.arraycopy(recorded.data[type], 0, data, start, length);
+                start += length;
+                recorded.sizes[type] = 0;
+            }
+            EventBatch batch = new EventBatch(type, step, data, size);
+            for(Consumer<EventBatch> listener : listeners.get(type)) {
+                listener.accept(batch);
+            }
+        }
+    }
+}
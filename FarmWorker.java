@@ -0,0 +1,77 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A worker process of an EnsembleFarm. It takes one job at a time from
+ * the farm's queue, runs it to the end, and sends back the result,
+ * until the queue is empty.
+ *
+ * A job is a message holding its id, the field's depth and width, the
+ * maximum number of steps, the seed and the parameters. A result is a
+ * message holding the job's id, the number of steps run and the final
+ * population of each species. An empty message means there are no more
+ * jobs.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class FarmWorker
+{
+    /**
+     * Run jobs from the farm listening on the given port, until it has
+     * no more. The only argument is the port.
+     * @param args The arguments.
+     * @throws IOException If the connection fails.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        try(SocketChannel farm = Loopback.connect(Integer.parseInt(args[0]))) {
+            // Ask for the first job.
+            Loopback.send(farm, new byte[0]);
+            ByteBuffer job = Loopback.receive(farm);
+            while(job.hasRemaining()) {
+                Loopback.send(farm, runJob(job));
+                job = Loopback.receive(farm);
+            }
+        }
+    }
+
+    /**
+     * Run a job until its field stops being viable or it reaches its
+     * maximum number of steps.
+     * @param job The job's message.
+     * @return The result's message.
+     * @throws IOException If the job cannot be read.
+     */
+    static byte[] runJob(ByteBuffer job) throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(job.array(), job.position(), job.remaining()));
+        int id = in.readInt();
+        int depth = in.readInt();
+        int width = in.readInt();
+        int maxSteps = in.readInt();
+        long seed = in.readLong();
+        Parameters parameters = Parameters.readFrom(in);
+
+        Simulator simulator = new Simulator(depth, width, seed, false, parameters);
+        while(simulator.getStep() < maxSteps && simulator.getField().isViable()) {
+            simulator.simulateOneStep();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(id);
+        out.writeInt(simulator.getStep());
+        for(int count : simulator.getField().countSpecies()) {
+            out.writeInt(count);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -1,8 +1,14 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal/object.
+ * Organisms may be placed from several threads at once, as long as
+ * no two threads place into the same location.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
@@ -10,14 +16,52 @@ import java.util.*;
 public class Field
 {
     // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    private static final Random rand = Randomizer.getRandom(Randomizer.MOVEMENT);
+    // The largest range whose neighbourhood offsets are precomputed.
+    // This covers every mate, food and movement range in use.
+    private static final int MAX_PRECOMPUTED_RANGE = 8;
+    // The (row, col) offsets of each neighbourhood, indexed by range.
+    // Offsets are stored as pairs in the order they are scanned.
+    private static final int[][] OFFSETS = new int[MAX_PRECOMPUTED_RANGE + 1][];
+    // The width and depth of the regions whose occupancy the field tracks.
+    public static final int REGION_SIZE = 16;
+    // Atomic access to the words of the occupancy bitmap.
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static {
+        for(int range = 0; range <= MAX_PRECOMPUTED_RANGE; range++) {
+            OFFSETS[range] = computeOffsets(range);
+        }
+    }
     
     // The dimensions of the field.
     private final int depth, width;
-    // Animals mapped by location.
-    private final Map<Location, Organism> field = new HashMap<>();
-    // The animals.
-    private final List<Organism> organisms = new ArrayList<>();
+    // Animals indexed by row * width + col, unless a subclass stores them.
+    private final Organism[] field;
+    // Whether each position's animal was carried forward rather than placed.
+    private final boolean[] carried;
+    // The animals that act, in row-major order. Rebuilt from the
+    // positions when it is null.
+    private List<Organism> organisms;
+    // The organisms placed or carried into the field one at a time, in
+    // the order stored. Populations are counted from these, rather than
+    // from every position.
+    private final List<Organism> stored;
+    // The rows filled at once, which different threads may fill at the
+    // same time.
+    private final Queue<Organism[]> filled;
+    // The parameters of the run the field belongs to.
+    private Parameters parameters = Parameters.DEFAULT;
+    // Where the events of the step building this field go, or null if
+    // nobody listens.
+    private EventRecorder events;
+    // The number of regions across the field.
+    private final int regionsAcross;
+    // One bit per region, in row-major order of the regions, set once an
+    // organism has been stored in the region. Scans of the field skip the
+    // regions without one, so after a crash they cost in proportion to the
+    // area still occupied rather than to the whole field.
+    private final long[] occupied;
 
     /**
      * Represent a field of the given dimensions.
@@ -25,9 +69,48 @@ public class Field
      * @param width The width of the field.
      */
     public Field(int depth, int width)
+    {
+        this(depth, width, true);
+    }
+
+    /**
+     * Represent a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param ownStorage false if a subclass stores the positions itself
+     *                   by overriding getCell, isCarried and storeCell.
+     */
+    protected Field(int depth, int width, boolean ownStorage)
     {
         this.depth = depth;
         this.width = width;
+        field = ownStorage ? new Organism[depth * width] : null;
+        carried = ownStorage ? new boolean[depth * width] : null;
+        stored = new ArrayList<>();
+        filled = new ConcurrentLinkedQueue<>();
+        regionsAcross = (width + REGION_SIZE - 1) / REGION_SIZE;
+        int regionsDown = (depth + REGION_SIZE - 1) / REGION_SIZE;
+        occupied = new long[(regionsAcross * regionsDown + 63) / 64];
+    }
+
+    /**
+     * Represent a view of another field, of the same dimensions, that
+     * has no storage, occupancy bitmap or record of stored organisms of
+     * its own. A subclass must override getCell, isCarried, storeCell,
+     * markOccupied, isRegionOccupied and recordStored, and must not be
+     * filled, cleared or counted.
+     * @param base The field viewed.
+     */
+    protected Field(Field base)
+    {
+        depth = base.depth;
+        width = base.width;
+        field = null;
+        carried = null;
+        stored = null;
+        filled = null;
+        regionsAcross = base.regionsAcross;
+        occupied = null;
     }
 
     /**
@@ -40,14 +123,88 @@ public class Field
     public void placeOrganism(Organism organism, Location location)
     {
         assert location != null;
-        Object other = field.get(location);
-        if(other != null) {
-            organisms.remove(other);
+        recordStored(organism);
+        markOccupied(location.row(), location.col());
+        storeCell(location.row() * width + location.col(), organism, false);
+        organisms = null;
+    }
+
+    /**
+     * Place an organism at the given location, unless the location is
+     * held by a live organism that takes precedence. In this field any
+     * live organism already there does.
+     * @param organism The organism to be placed.
+     * @param location Where to place the organism.
+     * @return true if the organism was placed.
+     */
+    public boolean tryPlace(Organism organism, Location location)
+    {
+        Organism occupant = getOrganismAt(location);
+        if(occupant == null || ! occupant.isAlive()) {
+            placeOrganism(organism, location);
+            return true;
         }
-        field.put(location, organism);
-        organisms.add(organism);
+        return false;
     }
     
+    /**
+     * Let an animal eat an organism. In this field the meal happens at
+     * once: the prey dies and the eater gains its nutrition.
+     * @param eater The animal that eats.
+     * @param prey The organism eaten.
+     * @param location Where the prey is in the current state of the field.
+     * @param nutrition The nutrition the eater gains.
+     */
+    public void eat(Animal eater, Organism prey, Location location, int nutrition)
+    {
+        prey.setDead();
+        eater.feed(nutrition);
+    }
+
+    /**
+     * Place an organism that is not going to act at the given location.
+     * It occupies the location as usual, but is not included in
+     * getOrganisms().
+     * @param organism The organism to be placed.
+     * @param location Where to place the organism.
+     */
+    public void carryOrganism(Organism organism, Location location)
+    {
+        assert location != null;
+        recordStored(organism);
+        markOccupied(location.row(), location.col());
+        storeCell(location.row() * width + location.col(), organism, true);
+        organisms = null;
+    }
+
+    /**
+     * Fill whole rows of the field at once, replacing whatever was there.
+     * Different threads may fill different rows at the same time.
+     * @param firstRow The first row to fill.
+     * @param cells The organisms of the rows in row-major order, with
+     *              null for empty positions.
+     */
+    public void fillRows(int firstRow, Organism[] cells)
+    {
+        int start = firstRow * width;
+        if(field != null) {
+            System.arraycopy(cells, 0, field, start, cells.length);
+            Arrays.fill(carried, start, start + cells.length, false);
+        }
+        else {
+            for(int i = 0; i < cells.length; i++) {
+                storeCell(start + i, cells[i], false);
+            }
+        }
+        filled.add(cells);
+        for(int i = 0; i < cells.length; i++) {
+            if(cells[i] != null) {
+                markOccupied(firstRow + i / width, i % width);
+            }
+        }
+        organisms = null;
+    }
+
     /**
      * Return the organism at the given location, if any.
      * @param location Where in the field.
@@ -55,7 +212,150 @@ public class Field
      */
     public Organism getOrganismAt(Location location)
     {
-        return field.get(location);
+        return getCell(location.row() * width + location.col());
+    }
+
+    /**
+     * Return the organism at the given row and column, if any.
+     * @param row The row in the field.
+     * @param col The column in the field.
+     * @return The organism at the given position, or null if there is none.
+     */
+    public Organism getOrganismAt(int row, int col)
+    {
+        return getCell(row * width + col);
+    }
+
+    /**
+     * Return the organism stored at the given index.
+     * @param index The position's row * width + col.
+     * @return The organism there, or null if there is none.
+     */
+    protected Organism getCell(int index)
+    {
+        return field[index];
+    }
+
+    /**
+     * Return whether the organism at the given index was carried
+     * forward rather than placed.
+     * @param index The position's row * width + col.
+     * @return true if the organism there was carried forward.
+     */
+    protected boolean isCarried(int index)
+    {
+        return carried[index];
+    }
+
+    /**
+     * Note that positions have changed outside of placeOrganism and
+     * carryOrganism, so the organism list must be rebuilt.
+     */
+    protected void positionsChanged()
+    {
+        organisms = null;
+    }
+
+    /**
+     * Note that an organism has been stored at a position, so that the
+     * position's region is no longer skipped. Any thread may call this.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     */
+    protected void markOccupied(int row, int col)
+    {
+        int region = (row / REGION_SIZE) * regionsAcross + col / REGION_SIZE;
+        long bit = 1L << region;
+        // Most stores are into regions already marked; only those that are
+        // not pay for the atomic update.
+        if((occupied[region >>> 6] & bit) == 0) {
+            WORDS.getAndBitwiseOr(occupied, region >>> 6, bit);
+        }
+    }
+
+    /**
+     * Return whether an organism has been stored in a region.
+     * @param region The region's index, in row-major order of the regions.
+     * @return true if the region may hold organisms; false if it is empty.
+     */
+    protected boolean isRegionOccupied(int region)
+    {
+        return ((long) WORDS.getVolatile(occupied, region >>> 6) & (1L << region)) != 0;
+    }
+
+    /**
+     * Return the first column, from a given one on, of a row whose region
+     * may hold organisms. Scans of the field use this to skip the empty
+     * regions, e.g.
+     * for(int col = field.nextOccupiedCol(row, 0); col < width;
+     *     col = field.nextOccupiedCol(row, col + 1))
+     * visits every position of the row that may hold an organism.
+     * @param row The row.
+     * @param col The column to start from.
+     * @return The column, or the width of the field if there is none.
+     */
+    public int nextOccupiedCol(int row, int col)
+    {
+        int regionRowStart = (row / REGION_SIZE) * regionsAcross;
+        while(col < width) {
+            if(isRegionOccupied(regionRowStart + col / REGION_SIZE)) {
+                return col;
+            }
+            col = (col / REGION_SIZE + 1) * REGION_SIZE;
+        }
+        return width;
+    }
+
+    /**
+     * Note an organism stored into the field one at a time, so that it
+     * is included in the population counts.
+     * @param organism The organism stored.
+     */
+    protected void recordStored(Organism organism)
+    {
+        stored.add(organism);
+    }
+
+    /**
+     * Return every organism that has been stored into the field, with
+     * nulls, including those since moved, removed or overwritten.
+     * @return The organisms, in no particular order.
+     */
+    protected Stream<Organism> storedOrganisms()
+    {
+        return Stream.concat(stored.stream(), filled.stream().flatMap(Arrays::stream));
+    }
+
+    /**
+     * Return whether an organism stored into the field is alive and
+     * still holds its position.
+     * @param organism The organism, or null.
+     * @return true if the organism counts towards the population.
+     */
+    private boolean isPresent(Organism organism)
+    {
+        if(organism == null || ! organism.isAlive()) {
+            return false;
+        }
+        Location location = organism.getLocation();
+        return location != null && getOrganismAt(location) == organism;
+    }
+
+    /**
+     * Store an organism at the given index.
+     * @param index The position's row * width + col.
+     * @param organism The organism to store, or null to empty the position.
+     * @param carriedForward Whether the organism is carried forward.
+     */
+    protected void storeCell(int index, Organism organism, boolean carriedForward)
+    {
+        Organism lost = field[index];
+        if(events != null && organism != null && lost != null && lost != organism && lost.isAlive()) {
+            // The organism there has lost its place.
+            recordEvent(EventBatch.OVERCROWDING, lost);
+        }
+        field[index] = organism;
+        carried[index] = carriedForward;
     }
 
     /**
@@ -68,7 +368,7 @@ public class Field
         List<Location> free = new LinkedList<>();
         List<Location> adjacent = getAdjacentLocations(location);
         for(Location next : adjacent) {
-            Organism organism = field.get(next);
+            Organism organism = getOrganismAt(next);
             if(organism == null) {
                 free.add(next);
             }
@@ -91,6 +391,14 @@ public class Field
         return getLocationsInRange(location, 1);
     }
 
+    /**
+     * Return a shuffled list of locations within the given range of
+     * the given one. The list will not include the location itself.
+     * All locations will lie within the grid.
+     * @param location The location from which to generate the range.
+     * @param range The maximum row and column distance from the location.
+     * @return A list of locations in range of that given.
+     */
     public List<Location> getLocationsInRange(Location location, int range)
     {
         // The list of locations to be returned.
@@ -98,16 +406,13 @@ public class Field
         if(location != null) {
             int row = location.row();
             int col = location.col();
-            for(int roffset = -range; roffset <= range; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -range; coffset <= range; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
+            int[] offsets = range <= MAX_PRECOMPUTED_RANGE ? OFFSETS[range] : computeOffsets(range);
+            for(int i = 0; i < offsets.length; i += 2) {
+                int nextRow = row + offsets[i];
+                int nextCol = col + offsets[i + 1];
+                // Exclude invalid locations.
+                if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                    locations.add(new Location(nextRow, nextCol));
                 }
             }
             
@@ -119,55 +424,78 @@ public class Field
     }
 
     /**
-     * Print out the number of each organisms in the field.
+     * Compute the (row, col) offsets of every position within the given
+     * range of a location, excluding the location itself.
+     * @param range The maximum row and column distance.
+     * @return The offsets, stored as consecutive (row, col) pairs.
      */
-    public void fieldStats()
+    private static int[] computeOffsets(int range)
     {
-        int numLions = 0, numCheetahs = 0, numHyenas = 0, numZebras = 0,  numElephants = 0, numGrass = 0, numFruit = 0;
-        for(Organism organism : field.values()) {
-            if(organism instanceof Lion lion) {
-                if(lion.isAlive()) {
-                    numLions++;
+        int side = 2 * range + 1;
+        int[] offsets = new int[2 * (side * side - 1)];
+        int i = 0;
+        for(int roffset = -range; roffset <= range; roffset++) {
+            for(int coffset = -range; coffset <= range; coffset++) {
+                if(roffset != 0 || coffset != 0) {
+                    offsets[i++] = roffset;
+                    offsets[i++] = coffset;
                 }
             }
-            else if(organism instanceof Cheetah cheetah) {
-                if(cheetah.isAlive()) {
-                    numCheetahs++;
-                }
-            }
-            else if(organism instanceof Hyena hyena) {
-                if(hyena.isAlive()) {
-                    numHyenas++;
-                }
-            }
-            else if(organism instanceof Zebra zebra) {
-                if(zebra.isAlive()) {
-                    numZebras++;
-                }
-            }
-            else if(organism instanceof Elephant elephant) {
-                if(elephant.isAlive()) {
-                    numElephants++;
-                }
-            }
-            else if(organism instanceof Grass grass) {
-                if (grass.isAlive()) {
-                    numGrass++;
-                }
-            }
-            else if (organism instanceof Fruit fruit) {
-                if (fruit.isAlive()) {
-                    numFruit++;
+        }
+        return offsets;
+    }
+
+    /**
+     * Pack the field into one byte per position, in row-major order: 0
+     * for an empty position, otherwise the species id of the live
+     * organism there plus one. The regions no organism has been stored
+     * in are skipped.
+     * @param cells Where to pack the field; at least depth * width long.
+     */
+    public void packCells(byte[] cells)
+    {
+        Arrays.fill(cells, 0, depth * width, (byte) 0);
+        for(int row = 0; row < depth; row++) {
+            for(int col = nextOccupiedCol(row, 0); col < width; col = nextOccupiedCol(row, col + 1)) {
+                Organism organism = getOrganismAt(row, col);
+                if(organism != null && organism.isAlive()) {
+                    cells[row * width + col] = (byte) (organism.getSpecies() + 1);
                 }
             }
         }
-        System.out.println("Lions: " + numLions +
-                           " Cheetahs: " + numCheetahs +
-                           " Hyenas: " + numHyenas +
-                           " Zebras: " + numZebras +
-                           " Elephant: " + numElephants +
-                           " Grass: " + numGrass +
-                           " Fruit: " + numFruit);
+    }
+
+    /**
+     * Count the live organisms of each species in the field.
+     * The count goes through the organisms stored into the field rather
+     * than every position, so it takes time in proportion to the
+     * population, however large and empty the field is.
+     * @return The counts, indexed by species id.
+     */
+    public int[] countSpecies()
+    {
+        int[] counts = new int[Species.COUNT];
+        storedOrganisms().forEach(organism -> {
+            if(isPresent(organism)) {
+                counts[organism.getSpecies()]++;
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Print out the number of each organisms in the field.
+     */
+    public void fieldStats()
+    {
+        int[] counts = countSpecies();
+        System.out.println("Lions: " + counts[Species.LION] +
+                           " Cheetahs: " + counts[Species.CHEETAH] +
+                           " Hyenas: " + counts[Species.HYENA] +
+                           " Zebras: " + counts[Species.ZEBRA] +
+                           " Elephant: " + counts[Species.ELEPHANT] +
+                           " Grass: " + counts[Species.GRASS] +
+                           " Fruit: " + counts[Species.FRUIT]);
     }
 
     /**
@@ -175,7 +503,13 @@ public class Field
      */
     public void clear()
     {
-        field.clear();
+        for(int i = 0; i < depth * width; i++) {
+            storeCell(i, null, false);
+        }
+        stored.clear();
+        filled.clear();
+        Arrays.fill(occupied, 0);
+        organisms = null;
     }
 
     /**
@@ -184,57 +518,109 @@ public class Field
      */
     public boolean isViable()
     {
-        boolean preyFound = false;
-        boolean predatorFound = false;
-        boolean plantFound = false;
-        Iterator<Organism> it = organisms.iterator();
-        while(it.hasNext() && ! ((preyFound && predatorFound && plantFound))) {
-            Organism organism = it.next();
-            if(organism instanceof Lion lion) {
-                if(lion.isAlive()) {
-                    predatorFound = true;
-                }
-            }
-            else if(organism instanceof Cheetah cheetah) {
-                if(cheetah.isAlive()) {
-                    predatorFound = true;
-                }
-            }
-            else if(organism instanceof Hyena hyena) {
-                if(hyena.isAlive()) {
-                    predatorFound = true;
-                }
-            }
-            else if(organism instanceof Zebra zebra) {
-                if(zebra.isAlive()) {
-                    preyFound = true;
-                }
-            }
-            else if(organism instanceof Elephant elephant) {
-                if(elephant.isAlive()) {
-                    preyFound = true;
-                }
-            }
-            else if (organism instanceof Grass grass) {
-                if (grass.isAlive()) {
-                    plantFound = true;
+        return Species.isViable(countSpecies());
+    }
+    
+    /**
+     * Get the list of organisms that act in this state of the field.
+     * Organisms placed with carryOrganism are not included.
+     * The list is in row-major order of the organisms' locations.
+     */
+    public List<Organism> getOrganisms()
+    {
+        if(organisms == null) {
+            List<Organism> placed = new ArrayList<>();
+            for(int row = 0; row < depth; row++) {
+                for(int col = nextOccupiedCol(row, 0); col < width; col = nextOccupiedCol(row, col + 1)) {
+                    int i = row * width + col;
+                    Organism organism = getCell(i);
+                    if(organism != null && ! isCarried(i)) {
+                        placed.add(organism);
+                    }
                 }
             }
-            else if (organism instanceof Fruit fruit) {
-                if (fruit.isAlive()) {
-                    plantFound = true;
-                }
+            organisms = placed;
+        }
+        return organisms;
+    }
+
+    /**
+     * Record an event that happened to an organism at its location, if
+     * anybody listens. Call it before the event kills the organism.
+     * @param type The type of event, one of those defined in EventBatch.
+     * @param subject The organism it happened to.
+     */
+    public void recordEvent(int type, Organism subject)
+    {
+        recordEvent(type, subject, -1);
+    }
+
+    /**
+     * Record an event that happened to an organism at its location, if
+     * anybody listens. Call it before the event kills the organism.
+     * @param type The type of event, one of those defined in EventBatch.
+     * @param subject The organism it happened to.
+     * @param other The type-specific value; see EventBatch.
+     */
+    public void recordEvent(int type, Organism subject, int other)
+    {
+        if(events != null) {
+            Location location = subject.getLocation();
+            if(location != null) {
+                recordEvent(type, subject.getSpecies(), location.row(), location.col(), other);
             }
         }
-        return preyFound && predatorFound && plantFound;
     }
-    
+
     /**
-     * Get the list of organisms.
+     * Record an event, if anybody listens.
+     * @param type The type of event, one of those defined in EventBatch.
+     * @param species The species of the organism it happened to.
+     * @param row The row where it happened.
+     * @param col The column where it happened.
+     * @param other The type-specific value; see EventBatch.
      */
-    public List<Organism> getOrganisms()
+    public void recordEvent(int type, int species, int row, int col, int other)
     {
-        return organisms;
+        if(events != null) {
+            events.record(type, species, row, col, other);
+        }
+    }
+
+    /**
+     * Return where the events of the step building this field go.
+     * @return The recorder, or null if nobody listens.
+     */
+    public EventRecorder getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Set where the events of the step building this field go.
+     * @param events The recorder, or null if nobody listens.
+     */
+    public void setEvents(EventRecorder events)
+    {
+        this.events = events;
+    }
+
+    /**
+     * Return the parameters of the run the field belongs to.
+     * @return The parameters.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * Set the parameters of the run the field belongs to.
+     * @param parameters The parameters.
+     */
+    public void setParameters(Parameters parameters)
+    {
+        this.parameters = parameters;
     }
 
     /**
@@ -0,0 +1,303 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable copy of a completed state of a field, for answering
+ * spatial queries from other threads while the simulation goes on.
+ * A simulator publishes one after each step (see
+ * Simulator.setSnapshotting); a query never sees a state being built,
+ * and never holds up the step loop.
+ *
+ * The snapshot holds the species of each position and which animals
+ * are infected. Counts over rectangles come from a table of prefix sums
+ * per layer, where a layer is a species, all animals, or infected
+ * animals. A layer's table is built the first time it is queried, by
+ * whichever thread queries it, and then answers any rectangle with four
+ * lookups.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public final class FieldSnapshot
+{
+    // The layers beyond the species, which have their species ids as layers.
+    // Every live animal.
+    public static final int ANIMALS = Species.COUNT;
+    // Every live infected animal.
+    public static final int INFECTED = Species.COUNT + 1;
+    // The number of layers.
+    public static final int LAYER_COUNT = Species.COUNT + 2;
+
+    // The step the state is at.
+    private final int step;
+    // The size of the field.
+    private final int depth, width;
+    // The species id of the live organism at each position plus one, or
+    // 0 where there is none, indexed by row * width + col.
+    private final byte[] cells;
+    // Whether each position holds a live infected animal.
+    private final boolean[] infected;
+    // The prefix sums of each layer, indexed by layer, then by
+    // row * (width + 1) + col; null until first needed.
+    private final AtomicReferenceArray<int[]> sums;
+
+    /**
+     * Take a snapshot of a completed state of a field.
+     * @param step The step the state is at.
+     * @param field The field. It must not change while the snapshot is taken.
+     */
+    public FieldSnapshot(int step, Field field)
+    {
+        this.step = step;
+        depth = field.getDepth();
+        width = field.getWidth();
+        cells = new byte[depth * width];
+        infected = new boolean[depth * width];
+        field.packCells(cells);
+        for(int row = 0; row < depth; row++) {
+            for(int col = field.nextOccupiedCol(row, 0); col < width; col = field.nextOccupiedCol(row, col + 1)) {
+                int index = row * width + col;
+                if(cells[index] != 0 && field.getOrganismAt(row, col) instanceof Animal animal) {
+                    infected[index] = animal.isInfected();
+                }
+            }
+        }
+        sums = new AtomicReferenceArray<>(LAYER_COUNT);
+    }
+
+    /**
+     * Return the step the state is at.
+     * @return The step.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Return the depth of the field.
+     * @return The depth.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Return the width of the field.
+     * @return The width.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Return the species at a position.
+     * @param row The row.
+     * @param col The column.
+     * @return The species id of the live organism there, or -1 if there is none.
+     */
+    public int getSpecies(int row, int col)
+    {
+        return cells[row * width + col] - 1;
+    }
+
+    /**
+     * Return whether a position holds a live infected animal.
+     * @param row The row.
+     * @param col The column.
+     * @return true if it does.
+     */
+    public boolean isInfected(int row, int col)
+    {
+        return infected[row * width + col];
+    }
+
+    /**
+     * Count the members of a layer in a rectangle. The rectangle is
+     * clipped to the field.
+     * @param layer A species id, ANIMALS or INFECTED.
+     * @param top The first row.
+     * @param left The first column.
+     * @param bottom The row after the last.
+     * @param right The column after the last.
+     * @return The number of members in the rectangle.
+     */
+    public int count(int layer, int top, int left, int bottom, int right)
+    {
+        if(layer < 0 || layer >= LAYER_COUNT) {
+            System.out.println("No such layer: " + layer);
+            return 0;
+        }
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, depth);
+        right = Math.min(right, width);
+        if(top >= bottom || left >= right) {
+            return 0;
+        }
+        int[] sum = sumsOf(layer);
+        int stride = width + 1;
+        return sum[bottom * stride + right] - sum[top * stride + right]
+             - sum[bottom * stride + left] + sum[top * stride + left];
+    }
+
+    /**
+     * Count the members of a layer in each block of a grid of square
+     * blocks. The blocks at the bottom and right edges may be cut short.
+     * @param layer A species id, ANIMALS or INFECTED.
+     * @param blockSize The width and depth of a block. Must be at least one.
+     * @return The counts, indexed by block row, then block column.
+     */
+    public int[][] countPerBlock(int layer, int blockSize)
+    {
+        if(blockSize < 1) {
+            System.out.println("The block size must be at least one.");
+            blockSize = 1;
+        }
+        int blockRows = (depth + blockSize - 1) / blockSize;
+        int blockCols = (width + blockSize - 1) / blockSize;
+        int[][] counts = new int[blockRows][blockCols];
+        for(int b = 0; b < blockRows; b++) {
+            for(int c = 0; c < blockCols; c++) {
+                counts[b][c] = count(layer, b * blockSize, c * blockSize,
+                                     (b + 1) * blockSize, (c + 1) * blockSize);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Return the fraction of animals that are infected in each block of
+     * a grid of square blocks.
+     * @param blockSize The width and depth of a block. Must be at least one.
+     * @return The fractions, indexed by block row, then block column;
+     *         NaN for blocks without animals.
+     */
+    public double[][] infectedFractionPerBlock(int blockSize)
+    {
+        int[][] sick = countPerBlock(INFECTED, blockSize);
+        int[][] animals = countPerBlock(ANIMALS, blockSize);
+        double[][] fractions = new double[sick.length][];
+        for(int b = 0; b < sick.length; b++) {
+            fractions[b] = new double[sick[b].length];
+            for(int c = 0; c < sick[b].length; c++) {
+                fractions[b][c] = animals[b][c] == 0 ? Double.NaN
+                                                     : (double) sick[b][c] / animals[b][c];
+            }
+        }
+        return fractions;
+    }
+
+    /**
+     * Find the member of a species nearest to a position, measuring
+     * distance in steps in any direction, including diagonally, as the
+     * field does. Of those equally near, the first in row-major order is
+     * returned. The distance is found by a binary search over the counts
+     * in squares around the position, so only one ring of positions is
+     * looked at.
+     * @param species The species id.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The location of the nearest member, or null if there is none.
+     */
+    public Location nearest(int species, int row, int col)
+    {
+        if(species < 0 || species >= Species.COUNT) {
+            System.out.println("No such species: " + species);
+            return null;
+        }
+        int low = 0;
+        int high = Math.max(Math.max(row, depth - 1 - row), Math.max(col, width - 1 - col));
+        if(count(species, row - high, col - high, row + high + 1, col + high + 1) == 0) {
+            return null;
+        }
+        // The smallest square with a member.
+        while(low < high) {
+            int middle = (low + high) / 2;
+            if(count(species, row - middle, col - middle, row + middle + 1, col + middle + 1) > 0) {
+                high = middle;
+            }
+            else {
+                low = middle + 1;
+            }
+        }
+        int radius = low;
+        byte member = (byte) (species + 1);
+        for(int r = Math.max(row - radius, 0); r <= Math.min(row + radius, depth - 1); r++) {
+            if(r == row - radius || r == row + radius) {
+                // A whole side of the ring.
+                for(int c = Math.max(col - radius, 0); c <= Math.min(col + radius, width - 1); c++) {
+                    if(cells[r * width + c] == member) {
+                        return new Location(r, c);
+                    }
+                }
+            }
+            else if(col - radius >= 0 && cells[r * width + col - radius] == member) {
+                return new Location(r, col - radius);
+            }
+            else if(col + radius < width && cells[r * width + col + radius] == member) {
+                return new Location(r, col + radius);
+            }
+        }
+        // Not reached: the square holds a member.
+        return null;
+    }
+
+    /**
+     * Return the prefix sums of a layer, building them if need be.
+     * @param layer The layer.
+     * @return The sums, indexed by row * (width + 1) + col: the number of
+     *         members above and to the left of that position.
+     */
+    private int[] sumsOf(int layer)
+    {
+        int[] sum = sums.get(layer);
+        if(sum == null) {
+            sum = buildSums(layer);
+            // Another thread may have built them too; either will do.
+            sums.compareAndSet(layer, null, sum);
+        }
+        return sum;
+    }
+
+    /**
+     * Build the prefix sums of a layer.
+     * @param layer The layer.
+     * @return The sums.
+     */
+    private int[] buildSums(int layer)
+    {
+        int stride = width + 1;
+        int[] sum = new int[(depth + 1) * stride];
+        for(int row = 0; row < depth; row++) {
+            int rowTotal = 0;
+            for(int col = 0; col < width; col++) {
+                int index = row * width + col;
+                if(isMember(layer, index)) {
+                    rowTotal++;
+                }
+                sum[(row + 1) * stride + col + 1] = sum[row * stride + col + 1] + rowTotal;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Return whether a position holds a member of a layer.
+     * @param layer The layer.
+     * @param index The position's row * width + col.
+     * @return true if it does.
+     */
+    private boolean isMember(int layer, int index)
+    {
+        int species = cells[index] - 1;
+        if(layer == INFECTED) {
+            return infected[index];
+        }
+        if(layer == ANIMALS) {
+            return species >= 0 && ! Species.isPlant(species);
+        }
+        return species == layer;
+    }
+}
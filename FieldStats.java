@@ -1,18 +1,15 @@
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * of a field. It will create and maintain a counter for any species
+ * that is found within the field.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public class FieldStats
 {
-    // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private final Map<Class<?>, Counter> counters;
+    // Counters for each species in the simulation, indexed by species id.
+    private final Counter[] counters;
     // Whether the counters are currently up to date.
     private boolean countsValid;
 
@@ -21,9 +18,9 @@ public class FieldStats
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
+        // Set up counters for each species that we might find.
+        // A counter is only created once its species is seen.
+        counters = new Counter[Species.COUNT];
         countsValid = true;
     }
 
@@ -37,8 +34,10 @@ public class FieldStats
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class<?> key : counters.keySet()) {
-            Counter info = counters.get(key);
+        for(Counter info : counters) {
+            if(info == null) {
+                continue;
+            }
             details.append(info.getName())
                    .append(": ")
                    .append(info.getCount())
@@ -54,24 +53,25 @@ public class FieldStats
     public void reset()
     {
         countsValid = false;
-        for(Class<?> key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
+        for(Counter count : counters) {
+            if(count != null) {
+                count.reset();
+            }
         }
     }
 
     /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
+     * Increment the count for one species.
+     * @param species The species id to increment.
      */
-    public void incrementCount(Class<?> animalClass)
+    public void incrementCount(int species)
     {
-        Counter count = counters.get(animalClass);
+        Counter count = counters[species];
         if(count == null) {
             // We do not have a counter for this species yet.
             // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
+            count = new Counter(Species.getName(species));
+            counters[species] = count;
         }
         count.increment();
     }
@@ -105,10 +105,11 @@ public class FieldStats
     {
         reset();
         for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
+            for(int col = field.nextOccupiedCol(row, 0); col < field.getWidth();
+                col = field.nextOccupiedCol(row, col + 1)) {
                 Organism organism = field.getOrganismAt(new Location(row, col));
                 if(organism != null) {
-                    incrementCount(organism.getClass());
+                    incrementCount(organism.getSpecies());
                 }
             }
         }
@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -17,19 +20,22 @@ public class Grass extends Plant
     // The age to which a grass plant can live.
     private static final int MAX_AGE = 20;
     // The likelihood that a grass plant reproduces.
-    private static final double BREEDING_PROBABILITY = 0.12;
+    // The default; a run can override it through Parameters.
+    static final double BREEDING_PROBABILITY = 0.12;
     // The max amount of 'children' a grass plant can birth at a time.
     private static final int MAX_YIELD = 8;
     // The nutritional value of a grass plant.
-    private static final int NUTRITION = 1;
+    static final int NUTRITION = 1;
     // The range a grass plant can mate in.
     private static final int MATE_RANGE = 2;
 
     // The grass' age.
     private int age;
+    // The hours skipped while dormant, still to be caught up on.
+    private int skippedHours;
 
     // A shared random number generator.
-    private static final Random rand = Randomizer.getRandom();
+    private static final Random rand = Randomizer.getRandom(Randomizer.BREED);
 
     /**
      * Constructor for instances of Grass.
@@ -39,7 +45,7 @@ public class Grass extends Plant
      */
     public Grass(boolean randomAge, Location location)
     {
-        super(location,NUTRITION);
+        super(location, Species.GRASS, NUTRITION);
         age = 0;
         if (randomAge) {
             age = rand.nextInt(MAX_AGE);
@@ -58,25 +64,67 @@ public class Grass extends Plant
      */
     public void act(Field currentField,Field nextFieldState, int time, Weather weather)
     {
-        incrementAge();
-        if (isAlive()) {
-            List<Location> freeLocations =
-                    nextFieldState.getFreeAdjacentLocations(getLocation());
-            if(! freeLocations.isEmpty()) {
-                giveBirth(currentField, nextFieldState, freeLocations, weather);
+        if (! isAlive()) {
+            // Eaten earlier in this step.
+            return;
+        }
+        // Catch up on any hours skipped while dormant along with this one.
+        int hours = 1 + skippedHours;
+        skippedHours = 0;
+        int breedingHours = incrementAge(hours);
+        boolean tooOld = age > MAX_AGE;
+        // A plant that reached its end during these hours still had
+        // its chances to breed before that.
+        if (tooOld || stayInPlace(nextFieldState)) {
+            if (breedingHours > 0) {
+                List<Location> freeLocations =
+                        nextFieldState.getFreeAdjacentLocations(getLocation());
+                if(! freeLocations.isEmpty()) {
+                    giveBirth(currentField, nextFieldState, freeLocations, weather, breedingHours);
+                }
             }
         }
+        if (tooOld) {
+            nextFieldState.recordEvent(EventBatch.OLD_AGE, this);
+            setDead();
+        }
     }
 
+
     /**
-     * Increases the grass' age. Could result in the grass' death.
+     * Return how long the grass will only age for from the given time.
+     * A plant that is too young to breed does nothing else.
+     * @param time The current time of the simulation.
+     * @return The number of hours until the grass can breed.
      */
-    private void incrementAge()
+    public int getDormantHours(int time)
     {
-        age++;
-        if (age > MAX_AGE) {
-            setDead();
-        }
+        return Math.max(0, BREEDING_AGE - 1 - (age + skippedHours));
+    }
+
+    /**
+     * Record the hours the grass was dormant for. They are caught up on,
+     * ageing and breeding included, the next time the grass acts.
+     * @param hours The number of hours the grass was dormant for.
+     */
+    public void wake(int hours)
+    {
+        skippedHours += hours;
+    }
+
+    /**
+     * Increases the grass' age by the given number of hours.
+     * The caller decides what happens if this takes it past its maximum age.
+     * @param hours The number of hours to age by.
+     * @return The number of those hours in which the grass was old enough
+     *         to breed and not yet too old to live.
+     */
+    private int incrementAge(int hours)
+    {
+        int firstBreedingAge = Math.max(age + 1, BREEDING_AGE);
+        int lastBreedingAge = Math.min(age + hours, MAX_AGE);
+        age += hours;
+        return Math.max(0, lastBreedingAge - firstBreedingAge + 1);
     }
 
     @Override
@@ -94,53 +142,51 @@ public class Grass extends Plant
      * New plants will be made into free adjacent locations.
      * @param freeLocations The locations that are free in the current field.
      * @param weather The current state of the weather.
+     * @param breedingHours The number of hours in which the grass could breed.
      */
-    private void giveBirth(Field currentField, Field nextFieldState, List<Location> freeLocations, Weather weather)
+    private void giveBirth(Field currentField, Field nextFieldState, List<Location> freeLocations, Weather weather, int breedingHours)
     {
         // New plants are born into adjacent locations.
         // Get a list of adjacent free locations.
-        int births = breed(weather.getRain());
+        double breedingProbability =
+                currentField.getParameters().getBreedingProbability(Species.GRASS);
+        int births = breed(weather.getRain(), breedingHours, breedingProbability);
         if(births > 0 && canMate(currentField,weather.getVisibility())) {
             for (int b = 0; b < births && !freeLocations.isEmpty(); b++) {
                 Location loc = freeLocations.remove(0);
                 Grass young = new Grass(false,loc);
-                nextFieldState.placeOrganism(young, loc);
+                if(nextFieldState.tryPlace(young, loc)) {
+                    nextFieldState.recordEvent(EventBatch.BIRTH, young);
+                }
             }
         }
     }
         
     /**
-     * Generate a number representing the yield,
-     * if it can breed.
+     * Generate a number representing the yield over the given number
+     * of hours. Each hour is one chance to breed, so the number of
+     * successful hours is drawn from the binomial distribution in one
+     * go, and only the successful hours draw a yield.
      * @param isRaining True if it is raining.
+     * @param breedingHours The number of hours in which the grass could breed.
+     * @param breedingProbability The likelihood of breeding in each hour.
      * @return The number of births (may be zero).
      */
-    private int breed(boolean isRaining)
+    private int breed(boolean isRaining, int breedingHours, double breedingProbability)
     {
-        int births;
-        double newBreedingProbability = BREEDING_PROBABILITY;
+        int births = 0;
+        double newBreedingProbability = breedingProbability;
         // More likely to reproduce if it is raining.
         if (isRaining) {
             newBreedingProbability = newBreedingProbability * 1.5;
         }
-        if(canBreed() && rand.nextDouble() <= newBreedingProbability) {
-            births = rand.nextInt(MAX_YIELD) + 1;
-        }
-        else {
-            births = 0;
+        int successes = binomial(rand, breedingHours, newBreedingProbability);
+        for (int h = 0; h < successes; h++) {
+            births += rand.nextInt(MAX_YIELD) + 1;
         }
         return births;
     }
 
-    /**
-     * A grass can breed if it has reached the breeding age.
-     * @return true if the grass can breed, false otherwise.
-     */
-    private boolean canBreed()
-    {
-        return age >= BREEDING_AGE;
-    }
-
     /**
      * A plant can mate if there is a plant of opposite sex within MATE_RANGE
      * @param field The field the grass is currently in.
@@ -155,13 +201,36 @@ public class Grass extends Plant
         while(mateLocation == null && it.hasNext()) {
             Location loc = it.next();
             Organism organism = field.getOrganismAt(loc);
-            if(organism instanceof Grass grass) {
-                if(grass.getSex() != getSex()) {
-                    return true;
-                }
+            if(organism != null && organism.getSpecies() == Species.GRASS
+                    && organism.getSex() != getSex()) {
+                return true;
             }
         }
         return false;
     }
 
+    /**
+     * Write the grass's state, apart from its location.
+     * @param out Where to write the state.
+     * @throws IOException If the state cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException
+    {
+        super.writeState(out);
+        out.writeShort(age);
+        out.writeInt(skippedHours);
+    }
+
+    /**
+     * Take on a live state written by writeState, at the given location.
+     * @param in Where to read the state from.
+     * @param location The grass's new location.
+     * @throws IOException If the state cannot be read.
+     */
+    public void readState(DataInput in, Location location) throws IOException
+    {
+        super.readState(in, location);
+        age = in.readShort();
+        skippedHours = in.readInt();
+    }
 }
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measure how much faster the generated species kernels let the
+ * organisms act than their own act methods do. Two simulators are run
+ * side by side from the same seed, one with a SerialStepEngine and one
+ * with a KernelStepEngine, and only the time spent in their engines is
+ * counted. After every step the two fields are compared cell by cell:
+ * the kernels must give exactly the same results.
+ *
+ * The arguments are the depth and width of the field, the most steps
+ * to run and the seed, all optional.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class KernelBenchmark
+{
+    // The defaults of the arguments.
+    private static final int DEFAULT_DEPTH = 300;
+    private static final int DEFAULT_WIDTH = 300;
+    private static final int DEFAULT_STEPS = 500;
+    private static final long DEFAULT_SEED = 42;
+    // The number of times the runs are repeated; the first warms up.
+    private static final int ROUNDS = 6;
+
+    /**
+     * A step engine that counts the time another one takes.
+     */
+    private static class TimedEngine implements StepEngine
+    {
+        // The engine timed.
+        private final StepEngine engine;
+        // The time spent in the engine so far, in nanoseconds.
+        private long nanos;
+
+        /**
+         * Time the given engine.
+         * @param engine The engine to time.
+         */
+        TimedEngine(StepEngine engine)
+        {
+            this.engine = engine;
+        }
+
+        /**
+         * Let the timed engine step, counting the time it takes.
+         */
+        public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                         int time, Weather weather)
+        {
+            long start = System.nanoTime();
+            engine.step(acting, currentField, nextFieldState, time, weather);
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args The depth, width, most steps and seed, all optional.
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WIDTH;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_STEPS;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+
+        if(! new KernelStepEngine().hasKernels()) {
+            System.out.println("Build with SpeciesKernelProcessor to benchmark the kernels.");
+            return;
+        }
+        System.out.println("Field " + depth + "x" + width + ", " + steps + " steps, seed " + seed);
+        for(int round = 0; round < ROUNDS; round++) {
+            TimedEngine serial = new TimedEngine(new SerialStepEngine(seed));
+            TimedEngine kernels = new TimedEngine(new KernelStepEngine(seed));
+            int ran = run(depth, width, steps, seed, serial, kernels);
+            if(ran < 0) {
+                return;
+            }
+            System.out.printf("%s %d steps: act %.1f ms, kernels %.1f ms, speedup %.2fx%n",
+                              round == 0 ? "Warm-up" : "Round " + round, ran,
+                              serial.nanos / 1e6, kernels.nanos / 1e6,
+                              (double) serial.nanos / kernels.nanos);
+        }
+    }
+
+    /**
+     * Run two simulators side by side until the field stops being viable
+     * or the given number of steps have been run. Once the animals have
+     * died out only plants act, and the kernels have nothing to do.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param steps The most steps to run.
+     * @param seed The seed of both simulators.
+     * @param first The engine of the first simulator.
+     * @param second The engine of the second simulator.
+     * @return The number of steps run, or -1 if the fields differed.
+     */
+    private static int run(int depth, int width, int steps, long seed,
+                           StepEngine first, StepEngine second)
+    {
+        Simulator a = new Simulator(depth, width, seed, false);
+        Simulator b = new Simulator(depth, width, seed, false);
+        a.setStepEngine(first);
+        b.setStepEngine(second);
+        int step = 0;
+        while(step < steps && a.getField().isViable()) {
+            a.simulateOneStep();
+            b.simulateOneStep();
+            step++;
+            if(! same(a.getField(), b.getField())) {
+                System.out.println("The fields differ at step " + step + ": "
+                                   + Arrays.toString(a.getField().countSpecies()) + " and "
+                                   + Arrays.toString(b.getField().countSpecies()));
+                return -1;
+            }
+        }
+        return step;
+    }
+
+    /**
+     * Return whether two fields hold the same species, equally infected,
+     * in every cell.
+     * @param a One field.
+     * @param b The other field.
+     * @return true if the fields are the same.
+     */
+    private static boolean same(Field a, Field b)
+    {
+        for(int row = 0; row < a.getDepth(); row++) {
+            for(int col = 0; col < a.getWidth(); col++) {
+                if(! same(a.getOrganismAt(row, col), b.getOrganismAt(row, col))) {
+                    return false;
+                }
+            }
+        }
+        return Arrays.equals(a.countSpecies(), b.countSpecies());
+    }
+
+    /**
+     * Return whether two cells hold the same live species, equally infected.
+     * @param a The organism in one cell, or null.
+     * @param b The organism in the other cell, or null.
+     * @return true if the cells are the same.
+     */
+    private static boolean same(Organism a, Organism b)
+    {
+        boolean aLive = a != null && a.isAlive();
+        boolean bLive = b != null && b.isAlive();
+        if(! aLive || ! bLive) {
+            return aLive == bLive;
+        }
+        return a.getSpecies() == b.getSpecies()
+            && (! (a instanceof Animal first) || first.isInfected() == ((Animal) b).isInfected());
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A step engine that lets the organisms act one after another, as a
+ * SerialStepEngine does, but through the specialised kernels that
+ * SpeciesKernelProcessor generates for the animals. Organisms without
+ * a kernel, and every organism in a build made without the processor,
+ * act through their own act methods. Either way the results are those
+ * of a SerialStepEngine created with the same seed.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class KernelStepEngine implements StepEngine
+{
+    // The generator of each step's seed, or null to use the shared generators.
+    private final Random seeds;
+    // The generated kernels, or null if the build has none.
+    private final StepKernel kernel;
+
+    /**
+     * Create a kernel step engine drawing from the shared generators.
+     */
+    public KernelStepEngine()
+    {
+        seeds = null;
+        kernel = StepKernel.load();
+    }
+
+    /**
+     * Create a kernel step engine giving each act its own stream.
+     * @param seed The seed the streams are derived from.
+     */
+    public KernelStepEngine(long seed)
+    {
+        seeds = new Random(seed);
+        kernel = StepKernel.load();
+    }
+
+    /**
+     * Return whether the build has the generated kernels.
+     * @return true if organisms act through the kernels.
+     */
+    public boolean hasKernels()
+    {
+        return kernel != null;
+    }
+
+    /**
+     * Let the given organisms act for one step, in order.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                     int time, Weather weather)
+    {
+        if (seeds == null) {
+            for (Organism organism : acting) {
+                act(organism, currentField, nextFieldState, time, weather);
+            }
+            return;
+        }
+        long stepSeed = seeds.nextLong();
+        Random previous = Randomizer.bind(null);
+        for (int i = 0; i < acting.size(); i++) {
+            Randomizer.bind(Randomizer.stream(stepSeed, i));
+            act(acting.get(i), currentField, nextFieldState, time, weather);
+        }
+        Randomizer.bind(previous);
+    }
+
+    /**
+     * Let one organism act, through its kernel if it has one.
+     */
+    private void act(Organism organism, Field currentField, Field nextFieldState,
+                     int time, Weather weather)
+    {
+        if (kernel == null || ! kernel.act(organism, currentField, nextFieldState, time, weather)) {
+            organism.act(currentField, nextFieldState, time, weather);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for simulations that run across several processes on one
+ * machine: starting worker processes, and exchanging messages with them
+ * over loopback sockets. A message is its length, then its bytes.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class Loopback
+{
+    /**
+     * Open a server socket on a free port of the loopback address.
+     * @return The server socket.
+     * @throws IOException If the socket cannot be opened.
+     */
+    public static ServerSocketChannel listen() throws IOException
+    {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return server;
+    }
+
+    /**
+     * Return the port a server socket listens on.
+     * @param server The server socket.
+     * @return The port.
+     * @throws IOException If the socket is closed.
+     */
+    public static int portOf(ServerSocketChannel server) throws IOException
+    {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Open a connection to a port of the loopback address, for small,
+     * frequent messages.
+     * @param port The port.
+     * @return The connection.
+     * @throws IOException If the connection fails.
+     */
+    public static SocketChannel connect(int port) throws IOException
+    {
+        SocketChannel channel = SocketChannel.open(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return prepare(channel);
+    }
+
+    /**
+     * Set up an accepted connection for small, frequent messages.
+     * @param channel The connection.
+     * @return The connection.
+     * @throws IOException If the connection is closed.
+     */
+    public static SocketChannel prepare(SocketChannel channel) throws IOException
+    {
+        channel.configureBlocking(true);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+
+    /**
+     * Start a Java process running the main method of a class, with the
+     * same Java, class path and preview setting as this process.
+     * @param mainClass The name of the class.
+     * @param options Further options for the new Java process, e.g. a heap size.
+     * @param args The arguments to the main method.
+     * @return The process.
+     * @throws IOException If the process cannot be started.
+     */
+    public static Process launch(String mainClass, List<String> options, List<String> args)
+        throws IOException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        if(ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+            command.add("--enable-preview");
+        }
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass);
+        command.addAll(args);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Send a message.
+     * @param channel The connection.
+     * @param payload The message.
+     * @throws IOException If the connection fails.
+     */
+    public static void send(SocketChannel channel, byte[] payload) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + payload.length);
+        buffer.putInt(payload.length).put(payload).flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Send a message holding a single number.
+     * @param channel The connection.
+     * @param value The number.
+     * @throws IOException If the connection fails.
+     */
+    public static void sendInt(SocketChannel channel, int value) throws IOException
+    {
+        send(channel, ByteBuffer.allocate(4).putInt(value).array());
+    }
+
+    /**
+     * Receive a message.
+     * @param channel The connection.
+     * @return The message, ready to read.
+     * @throws IOException If the connection fails or is closed.
+     */
+    public static ByteBuffer receive(SocketChannel channel) throws IOException
+    {
+        int length = readFully(channel, 4).getInt();
+        return readFully(channel, length);
+    }
+
+    /**
+     * Read the given number of bytes.
+     * @param channel The connection.
+     * @param length The number of bytes.
+     * @return The bytes, ready to read.
+     * @throws IOException If the connection fails or is closed.
+     */
+    private static ByteBuffer readFully(SocketChannel channel, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                throw new EOFException("The connection was closed.");
+            }
+        }
+        return buffer.flip();
+    }
+}
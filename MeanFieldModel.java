@@ -0,0 +1,315 @@
+import java.util.ArrayDeque;
+
+/**
+ * A mean-field model of a simulation: the populations of the three roles
+ * (predators, prey and plants) as a discrete-time generalised
+ * Lotka-Volterra system, fitted to the populations the agent-based
+ * simulation went through. Each step, the population of a role grows by
+ * the factor
+ *     1 + r + a[0] * predators + a[1] * prey + a[2] * plants
+ * where the growth rate r and the interaction rates a are fitted per
+ * role. Predation, grazing, crowding and starvation all show up as
+ * interaction rates, so the model needs no knowledge of the organisms.
+ *
+ * The rates are fitted by least squares to the per-capita growth of
+ * each role over the last steps observed, with a little ridge
+ * regularisation: when the populations hardly change, the interaction
+ * rates cannot be told apart, and the regularisation keeps them near
+ * zero instead of letting them grow large and cancel out.
+ *
+ * A simulator uses the model to fast-forward through quiet periods,
+ * where stepping every organism would mostly reproduce the same
+ * populations (see Simulator.fastForward).
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class MeanFieldModel
+{
+    // The number of coefficients per role: the growth rate, then one
+    // interaction rate per role.
+    private static final int COEFFICIENTS = Species.ROLE_COUNT + 1;
+    // The ridge penalty on the interaction rates, relative to the number
+    // of observations fitted.
+    private static final double RIDGE = 1e-3;
+
+    // The most steps observed that are fitted.
+    private final int window;
+    // The population of each role at each step observed, oldest first.
+    private final ArrayDeque<double[]> history;
+    // The coefficients fitted for each role, indexed by role; null until fitted.
+    private double[][] rates;
+    // The mean population of each role over the steps fitted. The
+    // populations are divided by these before fitting, so that the
+    // interaction rates are of the same size as the growth rate.
+    private double[] scales;
+
+    /**
+     * Create a model fitted to the last steps observed.
+     * @param window The number of steps fitted. Must be at least two.
+     */
+    public MeanFieldModel(int window)
+    {
+        if(window < 2) {
+            System.out.println("A mean-field model needs at least two steps.");
+            window = 2;
+        }
+        this.window = window;
+        history = new ArrayDeque<>(window);
+    }
+
+    /**
+     * Add the populations after a step, forgetting the oldest step once
+     * there are more than the window holds.
+     * @param counts The population of each species, indexed by species id.
+     */
+    public void observe(int[] counts)
+    {
+        if(history.size() == window) {
+            history.poll();
+        }
+        history.add(toRoles(counts));
+        rates = null;
+    }
+
+    /**
+     * Forget every step observed, e.g. after the field has been changed
+     * other than by a step.
+     */
+    public void clear()
+    {
+        history.clear();
+        rates = null;
+    }
+
+    /**
+     * Return whether the window is full.
+     * @return true if as many steps have been observed as are fitted.
+     */
+    public boolean isReady()
+    {
+        return history.size() == window;
+    }
+
+    /**
+     * Return whether the populations have been quiet over the window:
+     * no role's population has strayed further than a fraction of its
+     * mean from that mean.
+     * @param tolerance The fraction. Must not be negative.
+     * @return true if the window is full and every role stayed within it.
+     */
+    public boolean isQuiet(double tolerance)
+    {
+        if(! isReady()) {
+            return false;
+        }
+        double[] means = meanPopulations();
+        for(double[] populations : history) {
+            for(int role = 0; role < Species.ROLE_COUNT; role++) {
+                if(Math.abs(populations[role] - means[role]) > tolerance * means[role]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Predict the populations of the species some steps ahead. Each role
+     * is predicted by the model, and shared among its species as the
+     * role is shared now. A species that has died out stays so.
+     * @param counts The population of each species now, indexed by species id.
+     * @param steps The number of steps ahead.
+     * @param capacity The most organisms of one role the field can hold.
+     * @return The predicted population of each species, or null if the
+     *         model cannot be fitted yet.
+     */
+    public int[] predict(int[] counts, int steps, int capacity)
+    {
+        if(! fit()) {
+            return null;
+        }
+        double[] now = toRoles(counts);
+        double[] ahead = now.clone();
+        for(int s = 0; s < steps; s++) {
+            double[] next = new double[Species.ROLE_COUNT];
+            for(int role = 0; role < Species.ROLE_COUNT; role++) {
+                double growth = 1 + rates[role][0];
+                for(int other = 0; other < Species.ROLE_COUNT; other++) {
+                    growth += rates[role][other + 1] * ahead[other] / scales[other];
+                }
+                next[role] = Math.min(Math.max(ahead[role] * growth, 0), capacity);
+            }
+            ahead = next;
+        }
+        int[] predicted = new int[Species.COUNT];
+        for(int species = 0; species < Species.COUNT; species++) {
+            int role = Species.getRole(species);
+            if(now[role] > 0) {
+                predicted[species] = (int) Math.round(ahead[role] * counts[species] / now[role]);
+            }
+        }
+        return predicted;
+    }
+
+    /**
+     * Return the coefficients fitted for a role.
+     * @param role One of the roles defined in Species.
+     * @return The growth rate per step, then the interaction rate with
+     *         each role per organism of that role; or null if the model
+     *         cannot be fitted yet.
+     */
+    public double[] getRates(int role)
+    {
+        if(! fit()) {
+            return null;
+        }
+        double[] perOrganism = rates[role].clone();
+        for(int other = 0; other < Species.ROLE_COUNT; other++) {
+            perOrganism[other + 1] /= scales[other];
+        }
+        return perOrganism;
+    }
+
+    /**
+     * Fit the coefficients to the steps observed, unless they are fitted.
+     * @return true if the model is fitted; false if too few steps have
+     *         been observed.
+     */
+    private boolean fit()
+    {
+        if(rates != null) {
+            return true;
+        }
+        if(history.size() < 2) {
+            return false;
+        }
+        scales = meanPopulations();
+        for(int role = 0; role < Species.ROLE_COUNT; role++) {
+            // A role that has died out cannot scale the others.
+            scales[role] = Math.max(scales[role], 1);
+        }
+        double[][] fitted = new double[Species.ROLE_COUNT][];
+        for(int role = 0; role < Species.ROLE_COUNT; role++) {
+            // The normal equations of the least squares fit.
+            double[][] products = new double[COEFFICIENTS][COEFFICIENTS];
+            double[] targets = new double[COEFFICIENTS];
+            double[] previous = null;
+            int observations = 0;
+            for(double[] populations : history) {
+                if(previous != null && previous[role] > 0) {
+                    double[] features = features(previous);
+                    double growth = populations[role] / previous[role] - 1;
+                    for(int i = 0; i < COEFFICIENTS; i++) {
+                        targets[i] += features[i] * growth;
+                        for(int j = 0; j < COEFFICIENTS; j++) {
+                            products[i][j] += features[i] * features[j];
+                        }
+                    }
+                    observations++;
+                }
+                previous = populations;
+            }
+            for(int i = 1; i < COEFFICIENTS; i++) {
+                products[i][i] += RIDGE * Math.max(observations, 1);
+            }
+            // With no observations the role is extinct and all rates are zero.
+            fitted[role] = observations == 0 ? new double[COEFFICIENTS] : solve(products, targets);
+        }
+        rates = fitted;
+        return true;
+    }
+
+    /**
+     * Return the features the per-capita growth of a step is fitted to.
+     * @param populations The population of each role before the step.
+     * @return A constant one, then the scaled population of each role.
+     */
+    private double[] features(double[] populations)
+    {
+        double[] features = new double[COEFFICIENTS];
+        features[0] = 1;
+        for(int role = 0; role < Species.ROLE_COUNT; role++) {
+            features[role + 1] = populations[role] / scales[role];
+        }
+        return features;
+    }
+
+    /**
+     * Return the mean population of each role over the steps observed.
+     * @return The means, indexed by role.
+     */
+    private double[] meanPopulations()
+    {
+        double[] means = new double[Species.ROLE_COUNT];
+        for(double[] populations : history) {
+            for(int role = 0; role < Species.ROLE_COUNT; role++) {
+                means[role] += populations[role] / history.size();
+            }
+        }
+        return means;
+    }
+
+    /**
+     * Add up the populations of the species of each role.
+     * @param counts The population of each species, indexed by species id.
+     * @return The population of each role, indexed by role.
+     */
+    private static double[] toRoles(int[] counts)
+    {
+        double[] populations = new double[Species.ROLE_COUNT];
+        for(int species = 0; species < Species.COUNT; species++) {
+            populations[Species.getRole(species)] += counts[species];
+        }
+        return populations;
+    }
+
+    /**
+     * Solve a small system of linear equations by Gaussian elimination
+     * with partial pivoting.
+     * @param matrix The coefficients of the equations. It is overwritten.
+     * @param vector The right-hand sides. It is overwritten.
+     * @return The solution, with zero for any unknown the equations do
+     *         not determine.
+     */
+    private static double[] solve(double[][] matrix, double[] vector)
+    {
+        int n = vector.length;
+        for(int column = 0; column < n; column++) {
+            int pivot = column;
+            for(int row = column + 1; row < n; row++) {
+                if(Math.abs(matrix[row][column]) > Math.abs(matrix[pivot][column])) {
+                    pivot = row;
+                }
+            }
+            double[] swapped = matrix[column];
+            matrix[column] = matrix[pivot];
+            matrix[pivot] = swapped;
+            double value = vector[column];
+            vector[column] = vector[pivot];
+            vector[pivot] = value;
+            if(Math.abs(matrix[column][column]) < 1e-12) {
+                continue;
+            }
+            for(int row = column + 1; row < n; row++) {
+                double factor = matrix[row][column] / matrix[column][column];
+                for(int k = column; k < n; k++) {
+                    matrix[row][k] -= factor * matrix[column][k];
+                }
+                vector[row] -= factor * vector[column];
+            }
+        }
+        double[] solution = new double[n];
+        for(int row = n - 1; row >= 0; row--) {
+            if(Math.abs(matrix[row][row]) < 1e-12) {
+                continue;
+            }
+            double sum = vector[row];
+            for(int k = row + 1; k < n; k++) {
+                sum -= matrix[row][k] * solution[k];
+            }
+            solution[row] = sum / matrix[row][row];
+        }
+        return solution;
+    }
+}
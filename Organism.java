@@ -1,8 +1,80 @@
-interface Organism 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+interface Organism
 {
     boolean isAlive();
     Location getLocation();
 
+    /**
+     * Indicate that the organism is no longer alive.
+     */
+    void setDead();
+
+    /**
+     * Return the organism's species id.
+     * @return One of the ids defined in Species.
+     */
+    int getSpecies();
+
+    /**
+     * Return the organism's sex.
+     * @return 'M' for male, 'F' for female.
+     */
+    char getSex();
+
+    /**
+     * Return the number of hours, starting at the given time, during
+     * which the organism would do nothing but age. A dormant organism
+     * does not need to act until those hours have passed.
+     * @param time The current time in the simulation.
+     * @return The number of dormant hours, or zero if the organism acts now.
+     */
+    int getDormantHours(int time);
+
+    /**
+     * Catch up on the hours spent dormant, applying them in one go.
+     * @param hours The number of hours the organism was dormant for.
+     */
+    void wake(int hours);
+
+    /**
+     * Hold back the organism's own death and move from other organisms:
+     * until releaseChanges is called, isAlive and getLocation keep the
+     * answers they gave when this was called.
+     */
+    void holdChanges();
+
+    /**
+     * Apply the death or move held back since holdChanges, and stop
+     * holding them back.
+     */
+    void releaseChanges();
+
+    /**
+     * Return a copy of the organism in its current state. The copy is
+     * a separate organism: acting on it leaves this one unchanged.
+     * @return A copy of the organism.
+     */
+    Organism copy();
+
+    /**
+     * Write the organism's state, apart from its species and location,
+     * in a compact binary form, e.g. to hand it to another process.
+     * @param out Where to write the state.
+     * @throws IOException If the state cannot be written.
+     */
+    void writeState(DataOutput out) throws IOException;
+
+    /**
+     * Take on a live state written by writeState, at the given location.
+     * @param in Where to read the state from.
+     * @param location The organism's new location.
+     * @throws IOException If the state cannot be read.
+     */
+    void readState(DataInput in, Location location) throws IOException;
+
     /**
      * Act.
      * @param currentField The current state of the field.
@@ -10,4 +82,4 @@ interface Organism
      * @param time The current time in the simulation.
      */
     void act(Field currentField,Field nextFieldState, int time,Weather weather);
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compare two sets of parameters with common random numbers.
+ * Each replicate runs both sets from the same seed. A simulator gives
+ * every purpose of every step its own stream, so the two runs of a
+ * replicate are partially synchronised: their draws for each purpose
+ * start in step at every step, and drift apart within a step only
+ * from the first draw one run makes and the other does not, e.g. for
+ * an organism only one run has. The difference within each pair is
+ * then less noisy than the difference between independent runs, so
+ * fewer replicates are needed to tell the sets apart; how many fewer
+ * depends on how far the sets make the runs diverge.
+ *
+ * The measure compared is the population of each species averaged over
+ * the steps of a run. The report gives a 95% confidence interval for
+ * the mean paired difference, and the width an interval would have if
+ * the runs had been independent.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class PairedComparison
+{
+    // The two-sided 95% points of the t distribution, indexed by
+    // degrees of freedom minus one. Beyond the table the normal point is used.
+    private static final double[] T_95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+    // The 95% point of the normal distribution.
+    private static final double Z_95 = 1.960;
+
+    /**
+     * A confidence interval for a mean.
+     * @param mean The estimated mean.
+     * @param halfWidth Half the width of the interval.
+     */
+    public record Interval(double mean, double halfWidth)
+    {
+        /**
+         * Return whether the interval leaves out zero.
+         * @return true if the mean is significantly different from zero.
+         */
+        public boolean excludesZero()
+        {
+            return Math.abs(mean) > halfWidth;
+        }
+    }
+
+    // The size of the field of every run.
+    private final int depth, width;
+    // The number of steps every run goes on for.
+    private final int steps;
+    // The seed of each replicate, shared by both of its runs.
+    private final long[] seeds;
+    // The mean population of each species over each run, indexed
+    // [replicate][species], for the first and second set of parameters.
+    private final double[][] first, second;
+
+    /**
+     * Create a comparison.
+     * @param depth Depth of the field of every run.
+     * @param width Width of the field of every run.
+     * @param steps The number of steps every run goes on for.
+     * @param replicates The number of pairs of runs.
+     * @param seed The seed the replicates' seeds are derived from.
+     */
+    public PairedComparison(int depth, int width, int steps, int replicates, long seed)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        seeds = new long[replicates];
+        for(int replicate = 0; replicate < replicates; replicate++) {
+            seeds[replicate] = Randomizer.stream(seed, replicate).nextLong();
+        }
+        first = new double[replicates][];
+        second = new double[replicates][];
+    }
+
+    /**
+     * Run both sets of parameters for every replicate on a pool of the
+     * given number of threads, and wait for all runs to end.
+     * @param a The first set of parameters.
+     * @param b The second set of parameters.
+     * @param threads The number of runs to carry out at once.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void run(Parameters a, Parameters b, int threads) throws InterruptedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for(int replicate = 0; replicate < seeds.length; replicate++) {
+                int r = replicate;
+                results.add(pool.submit(() -> first[r] = runOne(seeds[r], a)));
+                results.add(pool.submit(() -> second[r] = runOne(seeds[r], b)));
+            }
+            for(Future<?> result : results) {
+                result.get();
+            }
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("A comparison run failed.", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Carry out one run and average its populations over its steps.
+     * @param seed The seed of the run.
+     * @param parameters The parameters of the run.
+     * @return The mean population of each species, indexed by species id.
+     */
+    private double[] runOne(long seed, Parameters parameters)
+    {
+        Simulator simulator = new Simulator(depth, width, seed, false, parameters);
+        double[] sums = new double[Species.COUNT];
+        for(int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+            int[] counts = simulator.getField().countSpecies();
+            for(int species = 0; species < Species.COUNT; species++) {
+                sums[species] += counts[species];
+            }
+        }
+        for(int species = 0; species < Species.COUNT; species++) {
+            sums[species] /= Math.max(1, steps);
+        }
+        return sums;
+    }
+
+    /**
+     * Return the 95% confidence interval for the mean difference
+     * (second minus first) in a species' population, from the pairs.
+     * @param species The species id.
+     * @return The interval.
+     */
+    public Interval getPairedDifference(int species)
+    {
+        int n = seeds.length;
+        double[] differences = new double[n];
+        for(int replicate = 0; replicate < n; replicate++) {
+            differences[replicate] = second[replicate][species] - first[replicate][species];
+        }
+        double mean = mean(differences);
+        double halfWidth = tPoint(n - 1) * Math.sqrt(variance(differences, mean) / n);
+        return new Interval(mean, halfWidth);
+    }
+
+    /**
+     * Return the 95% confidence interval for the mean difference in a
+     * species' population as if the runs had been independent, for
+     * comparison with the paired interval.
+     * @param species The species id.
+     * @return The interval.
+     */
+    public Interval getUnpairedDifference(int species)
+    {
+        int n = seeds.length;
+        double[] a = new double[n];
+        double[] b = new double[n];
+        for(int replicate = 0; replicate < n; replicate++) {
+            a[replicate] = first[replicate][species];
+            b[replicate] = second[replicate][species];
+        }
+        double meanA = mean(a);
+        double meanB = mean(b);
+        double halfWidth = tPoint(2 * (n - 1))
+                           * Math.sqrt((variance(a, meanA) + variance(b, meanB)) / n);
+        return new Interval(meanB - meanA, halfWidth);
+    }
+
+    /**
+     * Print the paired and unpaired intervals of every species.
+     */
+    public void printReport()
+    {
+        System.out.println("Second minus first, mean population over " + steps +
+                           " steps, " + seeds.length + " pairs (95% intervals):");
+        for(int species = 0; species < Species.COUNT; species++) {
+            Interval paired = getPairedDifference(species);
+            Interval unpaired = getUnpairedDifference(species);
+            System.out.println(String.format("  %-9s %+9.1f +/- %7.1f%s  (unpaired +/- %7.1f)",
+                                             Species.getName(species), paired.mean(),
+                                             paired.halfWidth(),
+                                             paired.excludesZero() ? " *" : "  ",
+                                             unpaired.halfWidth()));
+        }
+    }
+
+    /**
+     * Return the mean of some values.
+     * @param values The values.
+     * @return The mean.
+     */
+    private static double mean(double[] values)
+    {
+        double sum = 0;
+        for(double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Return the sample variance of some values.
+     * @param values The values.
+     * @param mean The mean of the values.
+     * @return The variance, or 0 if there are fewer than two values.
+     */
+    private static double variance(double[] values, double mean)
+    {
+        if(values.length < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for(double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * Return the two-sided 95% point of the t distribution.
+     * @param degrees The degrees of freedom.
+     * @return The point.
+     */
+    private static double tPoint(int degrees)
+    {
+        if(degrees < 1) {
+            return Double.NaN;
+        }
+        return degrees <= T_95.length ? T_95[degrees - 1] : Z_95;
+    }
+}
@@ -0,0 +1,323 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A step engine that lets organisms act on several threads at once.
+ * The field is cut into square tiles that are wider than the furthest
+ * an organism can reach while acting. The tiles are coloured like a
+ * 2x2 checkerboard, and the step runs in four phases, one per colour.
+ * Within a phase no two tiles touch, so the organisms of different
+ * tiles can never read or write the same position, and the tiles of a
+ * phase are processed concurrently on a ForkJoinPool. Within a tile,
+ * organisms act in the order they are given.
+ * Worker threads have no random streams bound, so each organism's act
+ * is given its own stream, derived from the simulator's streams for
+ * the step and the organism's place in the order it was given.
+ * The next state is built in a ConcurrentField, and each organism's
+ * placements carry the index of the position it started the step in,
+ * so conflicts for a position are settled by the same rule however the
+ * tiles are scheduled.
+ * The tiles of a phase are split among workers by the number of
+ * organisms they hold rather than by their number, so that a few
+ * crowded tiles do not leave the other workers idle, and idle workers
+ * steal what is left. With auto-tuning on, the engine also picks its
+ * tile size and worker count from the measured step times, on pools
+ * of its own that close shuts down.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class ParallelStepEngine implements StepEngine, AutoCloseable
+{
+    // The furthest from its own location that an organism reads or
+    // writes during act: the largest mate range, widened by good
+    // visibility (6 + 1), plus the largest ACTIVE_RANGE (4).
+    public static final int MAX_INTERACTION_RANGE = 7 + 4;
+    // The number of colours in the tile checkerboard.
+    private static final int PHASES = 4;
+    // The number of organisms below which a range of tiles is not split.
+    private static final int SEQUENTIAL_THRESHOLD = 64;
+
+    // The pool the tiles are processed on.
+    private ForkJoinPool pool;
+    // The width and depth of a tile.
+    private int tileSize;
+    // The tuner choosing the tile size and worker count, or null if
+    // they are fixed.
+    private StepTuner tuner;
+    // The pools the engine created while tuning, indexed by worker
+    // count, or null if it has never tuned.
+    private ForkJoinPool[] pools;
+
+    /**
+     * Create a parallel step engine on the common pool, using the
+     * smallest safe tile size.
+     */
+    public ParallelStepEngine()
+    {
+        this(ForkJoinPool.commonPool(), MAX_INTERACTION_RANGE + 1);
+    }
+
+    /**
+     * Create a parallel step engine.
+     * @param pool The pool to process tiles on.
+     * @param tileSize The width and depth of a tile. Must be greater
+     *                 than MAX_INTERACTION_RANGE.
+     */
+    public ParallelStepEngine(ForkJoinPool pool, int tileSize)
+    {
+        if(tileSize <= MAX_INTERACTION_RANGE) {
+            System.out.println("Tiles must be wider than " + MAX_INTERACTION_RANGE + ".");
+            System.out.println("Using the smallest safe tile size.");
+            tileSize = MAX_INTERACTION_RANGE + 1;
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Turn auto-tuning of the tile size and worker count on or off.
+     * While it is on, the engine tries the tile sizes and worker counts
+     * in turn, settles on the one with the lowest time per organism,
+     * and tries again when that time drifts, e.g. as the populations
+     * rise and fall. Turning it off keeps the current choice.
+     * Runs with the same seed give the same results whatever the number
+     * of workers, but not whatever the tile size, which decides the
+     * order the organisms act in; a tuned run is not reproducible.
+     * The pools created for tuning are kept when it is turned off, and
+     * used again when it is turned back on.
+     * @param autoTune Whether to tune.
+     */
+    public void setAutoTuning(boolean autoTune)
+    {
+        if(! autoTune) {
+            tuner = null;
+            return;
+        }
+        int maxWorkers = Runtime.getRuntime().availableProcessors();
+        if(pools == null) {
+            pools = new ForkJoinPool[maxWorkers + 1];
+        }
+        int smallest = MAX_INTERACTION_RANGE + 1;
+        tuner = new StepTuner(new int[] { smallest, 2 * smallest, 4 * smallest },
+                              new int[] { 1, Math.max(1, maxWorkers / 2), maxWorkers });
+    }
+
+    /**
+     * Return the width and depth of the tiles currently used.
+     * @return The tile size.
+     */
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * Return the number of workers currently used.
+     * @return The parallelism of the pool in use.
+     */
+    public int getWorkers()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Let the given organisms act for one step, tile by tile.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                     int time, Weather weather)
+    {
+        if(tuner == null) {
+            runStep(acting, currentField, nextFieldState, time, weather);
+            return;
+        }
+        tileSize = tuner.getTileSize();
+        int workers = tuner.getWorkers();
+        if(pools[workers] == null) {
+            pools[workers] = new ForkJoinPool(workers);
+        }
+        pool = pools[workers];
+        long start = System.nanoTime();
+        runStep(acting, currentField, nextFieldState, time, weather);
+        tuner.record(System.nanoTime() - start, acting.size());
+    }
+
+    /**
+     * Shut down the pools the engine created while tuning. The pool it
+     * was given is left running. The engine must not step again once
+     * it has been closed.
+     */
+    public void close()
+    {
+        if(pools != null) {
+            for(ForkJoinPool created : pools) {
+                if(created != null) {
+                    created.shutdown();
+                }
+            }
+            pools = null;
+        }
+        tuner = null;
+    }
+
+    /**
+     * Let the given organisms act for one step with the current tile
+     * size and pool.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    private void runStep(List<Organism> acting, Field currentField, Field nextFieldState,
+                         int time, Weather weather)
+    {
+        int tileRows = (currentField.getDepth() + tileSize - 1) / tileSize;
+        int tileCols = (currentField.getWidth() + tileSize - 1) / tileSize;
+
+        long stepSeed = Randomizer.stepSeed();
+
+        // Sort the organisms, by their place in the order, into the tile
+        // they start the step in. Only the tiles something starts in get
+        // a list, so the empty parts of the field cost nothing.
+        List<List<Integer>> tiles = new ArrayList<>(Collections.nCopies(tileRows * tileCols, null));
+        for(int i = 0; i < acting.size(); i++) {
+            Location location = acting.get(i).getLocation();
+            int tile = (location.row() / tileSize) * tileCols + location.col() / tileSize;
+            if(tiles.get(tile) == null) {
+                tiles.set(tile, new ArrayList<>());
+            }
+            tiles.get(tile).add(i);
+        }
+
+        for(int phase = 0; phase < PHASES; phase++) {
+            List<List<Integer>> phaseTiles = new ArrayList<>();
+            for(int tileRow = phase / 2; tileRow < tileRows; tileRow += 2) {
+                for(int tileCol = phase % 2; tileCol < tileCols; tileCol += 2) {
+                    List<Integer> tile = tiles.get(tileRow * tileCols + tileCol);
+                    if(tile != null) {
+                        phaseTiles.add(tile);
+                    }
+                }
+            }
+            if(! phaseTiles.isEmpty()) {
+                // The number of organisms in the phase's tiles before each tile.
+                int[] before = new int[phaseTiles.size() + 1];
+                for(int i = 0; i < phaseTiles.size(); i++) {
+                    before[i + 1] = before[i] + phaseTiles.get(i).size();
+                }
+                pool.invoke(new TileTask(acting, stepSeed, phaseTiles, before, 0, phaseTiles.size(),
+                                         currentField, nextFieldState, time, weather));
+            }
+        }
+    }
+
+    /**
+     * Create an empty concurrent field for the next state.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @return A new ConcurrentField.
+     */
+    public Field createField(int depth, int width)
+    {
+        return new ConcurrentField(depth, width);
+    }
+
+    /**
+     * Process a range of the tiles of one phase, splitting the range
+     * where it holds half of its organisms until it holds few enough.
+     */
+    private static class TileTask extends RecursiveAction
+    {
+        private final List<Organism> acting;
+        private final long stepSeed;
+        private final List<List<Integer>> tiles;
+        private final int[] before;
+        private final int from, to;
+        private final Field currentField, nextFieldState;
+        private final int time;
+        private final Weather weather;
+
+        /**
+         * Create a task for the tiles in [from, to).
+         */
+        TileTask(List<Organism> acting, long stepSeed, List<List<Integer>> tiles, int[] before,
+                 int from, int to, Field currentField, Field nextFieldState, int time, Weather weather)
+        {
+            this.acting = acting;
+            this.stepSeed = stepSeed;
+            this.tiles = tiles;
+            this.before = before;
+            this.from = from;
+            this.to = to;
+            this.currentField = currentField;
+            this.nextFieldState = nextFieldState;
+            this.time = time;
+            this.weather = weather;
+        }
+
+        /**
+         * Process the tiles, forking the two halves by organism count
+         * while there are many organisms.
+         */
+        protected void compute()
+        {
+            if(to - from == 1 || before[to] - before[from] <= SEQUENTIAL_THRESHOLD) {
+                int width = currentField.getWidth();
+                Random previous = Randomizer.bind(null);
+                for(int t = from; t < to; t++) {
+                    for(int i : tiles.get(t)) {
+                        Organism organism = acting.get(i);
+                        Location start = organism.getLocation();
+                        if(start == null) {
+                            // Eaten earlier in the step.
+                            continue;
+                        }
+                        ConcurrentField.setActor(start.row() * width + start.col());
+                        Randomizer.bind(Randomizer.stream(stepSeed, i));
+                        organism.act(currentField, nextFieldState, time, weather);
+                    }
+                }
+                Randomizer.bind(previous);
+                ConcurrentField.clearActor();
+            }
+            else {
+                int middle = split();
+                invokeAll(new TileTask(acting, stepSeed, tiles, before, from, middle,
+                                       currentField, nextFieldState, time, weather),
+                          new TileTask(acting, stepSeed, tiles, before, middle, to,
+                                       currentField, nextFieldState, time, weather));
+            }
+        }
+
+        /**
+         * Find the tile at which the range holds half of its organisms.
+         * @return An index strictly between from and to.
+         */
+        private int split()
+        {
+            int half = (before[from] + before[to]) / 2;
+            int low = from + 1;
+            int high = to - 1;
+            while(low < high) {
+                int middle = (low + high) / 2;
+                if(before[middle] < half) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
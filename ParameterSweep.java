@@ -0,0 +1,321 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run the simulation over many sets of parameters, each a number of
+ * times, and record how every run ended.
+ * The sets come from a grid over some of the parameters or from a
+ * Latin hypercube design. Runs are handed to a work-stealing pool, so a
+ * worker whose run ends early takes the next run at once. A run ends as
+ * soon as the field stops being viable, or once the populations have
+ * settled (if a stability criterion is set), or after the maximum
+ * number of steps.
+ *
+ * Replicate r of every set uses the same seed, so the sets are
+ * compared on the same starting conditions.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class ParameterSweep
+{
+    // The kinds of parameter an axis can vary.
+    public static final int CREATION = 0;
+    public static final int BREEDING = 1;
+
+    /**
+     * How a run ended.
+     */
+    public enum Outcome
+    {
+        // The field stopped being viable.
+        EXTINCT,
+        // The populations settled.
+        STABLE,
+        // The run reached the maximum number of steps.
+        COMPLETED
+    }
+
+    /**
+     * A parameter to vary, and the range to vary it over.
+     * @param kind CREATION or BREEDING.
+     * @param species The species id.
+     * @param low The lowest value.
+     * @param high The highest value.
+     */
+    public record Axis(int kind, int species, double low, double high)
+    {
+        /**
+         * Return a copy of the parameters with this axis set to a value.
+         * @param parameters The parameters to change.
+         * @param value The value.
+         * @return The changed copy.
+         */
+        public Parameters apply(Parameters parameters, double value)
+        {
+            if(kind == CREATION) {
+                return parameters.withCreationProbability(species, value);
+            }
+            else {
+                return parameters.withBreedingProbability(species, value);
+            }
+        }
+    }
+
+    /**
+     * How one run ended.
+     * @param point The index of the run's set of parameters.
+     * @param replicate The index of the run among those of its set.
+     * @param parameters The run's parameters.
+     * @param steps The number of steps run.
+     * @param outcome How the run ended.
+     * @param counts The final population of each species, indexed by species id.
+     */
+    public record Result(int point, int replicate, Parameters parameters,
+                         int steps, Outcome outcome, int[] counts)
+    {
+    }
+
+    // The size of the field of every run.
+    private final int depth, width;
+    // The maximum number of steps of a run.
+    private final int maxSteps;
+    // The number of runs of each set of parameters.
+    private final int replicates;
+    // The seed the runs' seeds are derived from.
+    private final long seed;
+    // The number of steps over which populations must settle, or 0 to
+    // run until extinction or the maximum number of steps.
+    private int stabilityWindow;
+    // How much each population may change over the window, relative to
+    // its size, for the run to count as settled.
+    private double stabilityTolerance;
+
+    /**
+     * Create a sweep.
+     * @param depth Depth of the field of every run.
+     * @param width Width of the field of every run.
+     * @param maxSteps The maximum number of steps of a run.
+     * @param replicates The number of runs of each set of parameters.
+     * @param seed The seed the runs' seeds are derived from.
+     */
+    public ParameterSweep(int depth, int width, int maxSteps, int replicates, long seed)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.maxSteps = maxSteps;
+        this.replicates = replicates;
+        this.seed = seed;
+    }
+
+    /**
+     * End runs early once their populations have settled: when no
+     * species' population has changed by more than the tolerance,
+     * relative to its size, over the given number of steps.
+     * @param window The number of steps to compare over, or 0 to never
+     *               end a run for being settled.
+     * @param tolerance The relative change allowed, e.g. 0.05.
+     */
+    public void setStability(int window, double tolerance)
+    {
+        if(window < 0 || tolerance < 0) {
+            System.out.println("The stability window and tolerance must be at least zero.");
+            return;
+        }
+        stabilityWindow = window;
+        stabilityTolerance = tolerance;
+    }
+
+    /**
+     * Make the sets of parameters of a grid: every combination of the
+     * given number of evenly spaced values along each axis.
+     * @param base The parameters the axes are applied to.
+     * @param axes The parameters to vary.
+     * @param levels The number of values along each axis.
+     * @return The sets of parameters.
+     */
+    public static List<Parameters> grid(Parameters base, List<Axis> axes, int levels)
+    {
+        List<Parameters> points = new ArrayList<>();
+        points.add(base);
+        for(Axis axis : axes) {
+            List<Parameters> extended = new ArrayList<>();
+            for(Parameters point : points) {
+                for(int level = 0; level < levels; level++) {
+                    double fraction = levels == 1 ? 0 : (double) level / (levels - 1);
+                    extended.add(axis.apply(point, axis.low() + fraction * (axis.high() - axis.low())));
+                }
+            }
+            points = extended;
+        }
+        return points;
+    }
+
+    /**
+     * Make the sets of parameters of a Latin hypercube design: each
+     * axis is cut into as many equal strata as there are points, and
+     * every stratum of every axis is used by exactly one point, at a
+     * random place within it.
+     * @param base The parameters the axes are applied to.
+     * @param axes The parameters to vary.
+     * @param count The number of points.
+     * @param seed The seed of the design.
+     * @return The sets of parameters.
+     */
+    public static List<Parameters> latinHypercube(Parameters base, List<Axis> axes,
+                                                  int count, long seed)
+    {
+        Random rand = new Random(seed);
+        Parameters[] points = new Parameters[count];
+        Arrays.fill(points, base);
+        for(Axis axis : axes) {
+            int[] strata = new int[count];
+            for(int i = 0; i < count; i++) {
+                strata[i] = i;
+            }
+            // Shuffle the strata among the points.
+            for(int i = count - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1);
+                int swap = strata[i];
+                strata[i] = strata[j];
+                strata[j] = swap;
+            }
+            for(int i = 0; i < count; i++) {
+                double fraction = (strata[i] + rand.nextDouble()) / count;
+                points[i] = axis.apply(points[i], axis.low() + fraction * (axis.high() - axis.low()));
+            }
+        }
+        return List.of(points);
+    }
+
+    /**
+     * Run every set of parameters the given number of times on a
+     * work-stealing pool, and wait for all runs to end.
+     * @param points The sets of parameters.
+     * @param threads The number of runs to carry out at once.
+     * @return How each run ended, ordered by set and then replicate.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public List<Result> run(List<Parameters> points, int threads) throws InterruptedException
+    {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for(int point = 0; point < points.size(); point++) {
+                for(int replicate = 0; replicate < replicates; replicate++) {
+                    int p = point;
+                    int r = replicate;
+                    futures.add(pool.submit(() -> runOne(p, r, points.get(p))));
+                }
+            }
+            List<Result> results = new ArrayList<>();
+            for(Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("A sweep run failed.", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Carry out one run until it ends.
+     * @param point The index of the set of parameters.
+     * @param replicate The index of the run among those of its set.
+     * @param parameters The parameters.
+     * @return How the run ended.
+     */
+    private Result runOne(int point, int replicate, Parameters parameters)
+    {
+        long runSeed = Randomizer.stream(seed, replicate).nextLong();
+        Simulator simulator = new Simulator(depth, width, runSeed, false, parameters);
+        // The populations of the last stabilityWindow + 1 steps, as a ring.
+        int[][] history = new int[stabilityWindow + 1][];
+        history[0] = simulator.getField().countSpecies();
+        Outcome outcome = Outcome.COMPLETED;
+        while(simulator.getStep() < maxSteps) {
+            if(! simulator.getField().isViable()) {
+                outcome = Outcome.EXTINCT;
+                break;
+            }
+            simulator.simulateOneStep();
+            int step = simulator.getStep();
+            int[] counts = simulator.getField().countSpecies();
+            if(stabilityWindow > 0) {
+                history[step % history.length] = counts;
+                if(step >= stabilityWindow
+                        && isSettled(history[(step - stabilityWindow) % history.length], counts)) {
+                    outcome = Outcome.STABLE;
+                    break;
+                }
+            }
+        }
+        return new Result(point, replicate, parameters, simulator.getStep(), outcome,
+                          simulator.getField().countSpecies());
+    }
+
+    /**
+     * Check whether no population has changed by more than the
+     * tolerance, relative to its earlier size.
+     * @param before The populations at the start of the window.
+     * @param now The populations now.
+     * @return true if the populations have settled.
+     */
+    private boolean isSettled(int[] before, int[] now)
+    {
+        for(int species = 0; species < Species.COUNT; species++) {
+            if(Math.abs(now[species] - before[species])
+                    > stabilityTolerance * Math.max(1, before[species])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Print, for each set of parameters, how its runs ended and how
+     * long they lasted on average.
+     * @param results The results of a sweep.
+     */
+    public static void printSummary(List<Result> results)
+    {
+        int point = -1;
+        int[] outcomes = new int[Outcome.values().length];
+        long steps = 0;
+        int runs = 0;
+        Parameters parameters = null;
+        for(int i = 0; i <= results.size(); i++) {
+            Result result = i < results.size() ? results.get(i) : null;
+            if(result == null || result.point() != point) {
+                if(runs > 0) {
+                    System.out.println("Point " + point + " " + parameters +
+                                       ": extinct " + outcomes[Outcome.EXTINCT.ordinal()] +
+                                       ", stable " + outcomes[Outcome.STABLE.ordinal()] +
+                                       ", completed " + outcomes[Outcome.COMPLETED.ordinal()] +
+                                       ", mean steps " + steps / runs);
+                }
+                if(result == null) {
+                    break;
+                }
+                point = result.point();
+                parameters = result.parameters();
+                Arrays.fill(outcomes, 0);
+                steps = 0;
+                runs = 0;
+            }
+            outcomes[result.outcome().ordinal()]++;
+            steps += result.steps();
+            runs++;
+        }
+    }
+}
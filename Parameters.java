@@ -0,0 +1,142 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The tunable probabilities of a simulation run: how likely each
+ * species is to be created in a position when the field is populated,
+ * and how likely it is to breed when it can. A set of parameters never
+ * changes once made, so one set can be shared by many runs at once;
+ * the with methods return a changed copy.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class Parameters
+{
+    // The parameters the model was written with.
+    public static final Parameters DEFAULT = new Parameters(
+        new double[] { 0.02, 0.02, 0.01, 0.09, 0.02, 0.16, 0.04 },
+        new double[] { Lion.BREEDING_PROBABILITY, Cheetah.BREEDING_PROBABILITY,
+                       Hyena.BREEDING_PROBABILITY, Zebra.BREEDING_PROBABILITY,
+                       Elephant.BREEDING_PROBABILITY, Grass.BREEDING_PROBABILITY,
+                       Fruit.BREEDING_PROBABILITY });
+
+    // The probability of creating each species in a position, indexed by species id.
+    private final double[] creationProbabilities;
+    // The probability of each species breeding, indexed by species id.
+    private final double[] breedingProbabilities;
+
+    /**
+     * Create a set of parameters.
+     * @param creationProbabilities The probability of creating each species
+     *                              in a position, indexed by species id.
+     * @param breedingProbabilities The probability of each species breeding,
+     *                              indexed by species id.
+     */
+    private Parameters(double[] creationProbabilities, double[] breedingProbabilities)
+    {
+        this.creationProbabilities = creationProbabilities;
+        this.breedingProbabilities = breedingProbabilities;
+    }
+
+    /**
+     * Return the probability that a species is created in a position.
+     * @param species The species id.
+     * @return The creation probability.
+     */
+    public double getCreationProbability(int species)
+    {
+        return creationProbabilities[species];
+    }
+
+    /**
+     * Return the probability that a species breeds when it can.
+     * @param species The species id.
+     * @return The breeding probability.
+     */
+    public double getBreedingProbability(int species)
+    {
+        return breedingProbabilities[species];
+    }
+
+    /**
+     * Return a copy with a different creation probability. The creation
+     * probabilities of all species together may not exceed one.
+     * @param species The species id.
+     * @param probability The new creation probability, between 0 and 1.
+     * @return The changed copy, or these parameters if the value is invalid.
+     */
+    public Parameters withCreationProbability(int species, double probability)
+    {
+        double[] creation = creationProbabilities.clone();
+        creation[species] = probability;
+        if(probability < 0 || Arrays.stream(creation).sum() > 1) {
+            System.out.println("Creation probabilities must be at least zero and sum to at most one.");
+            return this;
+        }
+        return new Parameters(creation, breedingProbabilities);
+    }
+
+    /**
+     * Return a copy with a different breeding probability.
+     * @param species The species id.
+     * @param probability The new breeding probability, between 0 and 1.
+     * @return The changed copy, or these parameters if the value is invalid.
+     */
+    public Parameters withBreedingProbability(int species, double probability)
+    {
+        if(probability < 0 || probability > 1) {
+            System.out.println("A breeding probability must be between zero and one.");
+            return this;
+        }
+        double[] breeding = breedingProbabilities.clone();
+        breeding[species] = probability;
+        return new Parameters(creationProbabilities, breeding);
+    }
+
+    /**
+     * Write the parameters in a compact binary form, e.g. to hand them
+     * to another process.
+     * @param out Where to write them.
+     * @throws IOException If they cannot be written.
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        for(int species = 0; species < Species.COUNT; species++) {
+            out.writeDouble(creationProbabilities[species]);
+            out.writeDouble(breedingProbabilities[species]);
+        }
+    }
+
+    /**
+     * Read parameters written by writeTo.
+     * @param in Where to read them from.
+     * @return The parameters.
+     * @throws IOException If they cannot be read.
+     */
+    public static Parameters readFrom(DataInput in) throws IOException
+    {
+        double[] creation = new double[Species.COUNT];
+        double[] breeding = new double[Species.COUNT];
+        for(int species = 0; species < Species.COUNT; species++) {
+            creation[species] = in.readDouble();
+            breeding[species] = in.readDouble();
+        }
+        return new Parameters(creation, breeding);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder("Parameters{");
+        for(int species = 0; species < Species.COUNT; species++) {
+            text.append(species == 0 ? "" : ", ")
+                .append(Species.getName(species))
+                .append(String.format("=%.3f/%.3f", creationProbabilities[species],
+                                      breedingProbabilities[species]));
+        }
+        return text.append('}').toString();
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 /**
  * Abstract class for plant subclasses.
@@ -5,25 +8,35 @@ import java.util.Random;
  * @author Yiun K and Reuben W
  * @version 7.0
  */
-public abstract class Plant implements Organism {
+public abstract class Plant implements Organism, Cloneable {
     // Whether the plant is alive or not.
     protected boolean alive;
     // The plant's sex, 'M' for 'Male', 'F' for 'Female'.
     private char sex;
     // The plant's location.
     protected Location location;
+    // Whether the plant's own death is held back from other organisms
+    // until the step is committed.
+    private boolean holding;
+    // Whether the plant has died while holding.
+    private boolean dying;
     // The plant's age.
     protected int age;
     // The plant's nutrition value.
     private final int nutrition;
+    // The plant's species id.
+    private final int species;
     
-    private static final Random rand = Randomizer.getRandom();
+    private static final Random rand = Randomizer.getRandom(Randomizer.BREED);
     /**
      * Constructor for objects of the Plant class.
      * @param location The plant's location.
+     * @param species The plant's species id.
+     * @param nutrition The plant's nutrition value.
      */
-    public Plant(Location location,int nutrition) {
+    public Plant(Location location, int species, int nutrition) {
         this.alive = true;
+        this.species = species;
         this.location = location;
         this.age = 0;
         this.nutrition = nutrition;
@@ -41,12 +54,106 @@ public abstract class Plant implements Organism {
     /**
      * Kill this plant and take it off the map.
      */
-    protected void setDead() 
+    public void setDead() 
     {
-        location = null;
-        alive = false;
+        if(holding) {
+            dying = true;
+        }
+        else {
+            location = null;
+            alive = false;
+        }
+    }
+
+    /**
+     * Hold back the plant's own death from other organisms until
+     * releaseChanges is called.
+     */
+    public void holdChanges()
+    {
+        holding = true;
+    }
+
+    /**
+     * Apply the death held back since holdChanges.
+     */
+    public void releaseChanges()
+    {
+        holding = false;
+        if(dying) {
+            dying = false;
+            setDead();
+        }
     }
     
+    /**
+     * Keep the plant at its current location in the next state of the
+     * field. If an animal has already moved there, the plant is trampled.
+     * @param nextFieldState The new state being built.
+     * @return true if the plant stayed, false if it was trampled.
+     */
+    protected boolean stayInPlace(Field nextFieldState)
+    {
+        if(nextFieldState.tryPlace(this, location)) {
+            return true;
+        }
+        else {
+            nextFieldState.recordEvent(EventBatch.OVERCROWDING, this);
+            setDead();
+            return false;
+        }
+    }
+
+    /**
+     * Draw the number of successes in a number of independent trials,
+     * e.g. the hours in which a plant breeds over a fused update. The
+     * count is drawn by inverting the binomial distribution with a
+     * single uniform draw, walking up from zero successes, so it costs
+     * in proportion to the number of successes rather than of trials.
+     * A single trial draws exactly as rand.nextDouble() <= probability.
+     * @param rand The stream to draw from.
+     * @param trials The number of trials.
+     * @param probability The probability of success in each trial.
+     * @return The number of successes, between 0 and trials.
+     */
+    protected static int binomial(Random rand, int trials, double probability)
+    {
+        if(trials <= 0) {
+            return 0;
+        }
+        double u = rand.nextDouble();
+        if(trials == 1) {
+            return u <= probability ? 1 : 0;
+        }
+        if(probability >= 1) {
+            return trials;
+        }
+        if(probability <= 0) {
+            return 0;
+        }
+        double odds = probability / (1 - probability);
+        // The probability of exactly k successes, and of at most k.
+        double mass = Math.pow(1 - probability, trials);
+        if(mass == 0) {
+            // Too many trials to invert; count them one by one.
+            int successes = u <= probability ? 1 : 0;
+            for(int t = 1; t < trials; t++) {
+                if(rand.nextDouble() <= probability) {
+                    successes++;
+                }
+            }
+            return successes;
+        }
+        double cumulative = mass;
+        int successes = 0;
+        while(u > cumulative && successes < trials) {
+            mass *= odds * (trials - successes) / (successes + 1);
+            successes++;
+            cumulative += mass;
+        }
+        return successes;
+    }
+
     /**
      * @return The plant's location
      */
@@ -55,6 +162,53 @@ public abstract class Plant implements Organism {
         return location;
     }
 
+    /**
+     * Return a copy of the plant in its current state.
+     * @return A copy of the plant.
+     */
+    public Organism copy()
+    {
+        try {
+            return (Organism) super.clone();
+        }
+        catch(CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Write the plant's state, apart from its species and location.
+     * @param out Where to write the state.
+     * @throws IOException If the state cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException
+    {
+        out.writeByte(sex);
+        out.writeShort(age);
+    }
+
+    /**
+     * Take on a live state written by writeState, at the given location.
+     * @param in Where to read the state from.
+     * @param location The plant's new location.
+     * @throws IOException If the state cannot be read.
+     */
+    public void readState(DataInput in, Location location) throws IOException
+    {
+        alive = true;
+        this.location = location;
+        sex = (char) in.readByte();
+        age = in.readShort();
+    }
+
+    /**
+     * @return The plant's species id.
+     */
+    public int getSpecies()
+    {
+        return species;
+    }
+
     /**
      * Return the plant's sex.
      * @return The plant's sex.
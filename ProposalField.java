@@ -0,0 +1,370 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A field that is built in two phases.
+ * In the propose phase organisms act against it as usual, but their
+ * moves, births and meals are only recorded, into one CommandBuffer per
+ * worker thread; the field itself holds nothing but the organisms
+ * carried forward, and nothing in it changes while organisms read it.
+ * Each acting organism also holds back its own death and move, so
+ * other organisms see it as it started the step until the commit.
+ * In the commit phase the held back deaths and moves are applied
+ * first, then the commands of all workers are resolved and applied in
+ * one batch:
+ *
+ * - Meals first. When several animals eat the same organism, the one
+ *   that started the step at the lowest position index gets it. The
+ *   others go hungry. Meals are eaten in the same order, so an animal
+ *   eaten before its own meal goes without it.
+ * - Then placements, grouped by target position. A live carried
+ *   organism keeps its position. Otherwise the lowest priority wins,
+ *   and an organism that moves beats its own newborn.
+ * - An animal that loses the position it moved to falls back to the
+ *   position it started in, in priority order, and dies of overcrowding
+ *   if that is taken too. A plant that loses its position is trampled.
+ *   A newborn that loses is not born.
+ *
+ * Priorities come from where organisms started the step, so the
+ * outcome does not depend on how the acting organisms were split
+ * among workers.
+ *
+ * The buffers are emptied after each commit. They are not kept as a
+ * log to replay steps from: ageing, hunger and the random draws are
+ * not commands, so a step could not be rebuilt from them alone.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class ProposalField extends Field
+{
+    // The buffers of all workers that have proposed into this field.
+    private final ConcurrentLinkedQueue<CommandBuffer> buffers;
+    // The calling worker's buffer.
+    private final ThreadLocal<CommandBuffer> buffer;
+
+    /**
+     * Represent a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ProposalField(int depth, int width)
+    {
+        super(depth, width);
+        buffers = new ConcurrentLinkedQueue<>();
+        buffer = ThreadLocal.withInitial(() -> {
+            CommandBuffer created = new CommandBuffer();
+            buffers.add(created);
+            return created;
+        });
+    }
+
+    /**
+     * Record the calling thread's commands against the given organism
+     * until the actor is cleared.
+     * @param organism The organism about to act.
+     */
+    public void setActor(Organism organism)
+    {
+        Location start = organism.getLocation();
+        buffer.get().setActor(organism, start.row() * getWidth() + start.col());
+    }
+
+    /**
+     * Stop recording commands on the calling thread.
+     */
+    public void clearActor()
+    {
+        buffer.get().setActor(null, 0);
+    }
+
+    /**
+     * Propose placing an organism at the given location. Outside of an
+     * organism's act the organism is placed at once.
+     * @param organism The organism to be placed.
+     * @param location Where to place the organism.
+     */
+    public void placeOrganism(Organism organism, Location location)
+    {
+        CommandBuffer commands = buffer.get();
+        if(commands.getActor() == null) {
+            super.placeOrganism(organism, location);
+        }
+        else {
+            int op = organism == commands.getActor() ? CommandBuffer.MOVE : CommandBuffer.BIRTH;
+            commands.add(op, indexOf(location), organism, null, 0);
+        }
+    }
+
+    /**
+     * Propose placing an organism at the given location. Whether it gets
+     * the location is only known after the commit.
+     * @param organism The organism to be placed.
+     * @param location Where to place the organism.
+     * @return true while proposing; otherwise whether it was placed.
+     */
+    public boolean tryPlace(Organism organism, Location location)
+    {
+        if(buffer.get().getActor() == null) {
+            return super.tryPlace(organism, location);
+        }
+        placeOrganism(organism, location);
+        return true;
+    }
+
+    /**
+     * Propose that an animal eats an organism.
+     * @param eater The animal that eats.
+     * @param prey The organism eaten.
+     * @param location Where the prey is in the current state of the field.
+     * @param nutrition The nutrition the eater gains.
+     */
+    public void eat(Animal eater, Organism prey, Location location, int nutrition)
+    {
+        CommandBuffer commands = buffer.get();
+        if(commands.getActor() == null) {
+            super.eat(eater, prey, location, nutrition);
+        }
+        else {
+            commands.add(CommandBuffer.EAT, indexOf(location), eater, prey, nutrition);
+        }
+    }
+
+    /**
+     * Resolve and apply the commands of every worker, then empty the
+     * buffers.
+     */
+    public void commit()
+    {
+        int cells = getDepth() * getWidth();
+        // The winning command for each position, as (buffer, index).
+        int[] winnerBuffer = new int[cells];
+        int[] winnerIndex = new int[cells];
+        CommandBuffer[] all = buffers.toArray(new CommandBuffer[0]);
+        for(CommandBuffer commands : all) {
+            commands.releaseActors();
+        }
+
+        // Meals.
+        Arrays.fill(winnerBuffer, -1);
+        for(int b = 0; b < all.length; b++) {
+            CommandBuffer commands = all[b];
+            for(int i = 0; i < commands.size(); i++) {
+                if(commands.getOp(i) == CommandBuffer.EAT) {
+                    int target = commands.getTarget(i);
+                    int w = winnerBuffer[target];
+                    if(w < 0 || commands.getPriority(i) < all[w].getPriority(winnerIndex[target])) {
+                        winnerBuffer[target] = b;
+                        winnerIndex[target] = i;
+                    }
+                }
+            }
+        }
+        // Winning meals, as the positions of their commands.
+        long[] meals = new long[16];
+        int mealCount = 0;
+        for(int b = 0; b < all.length; b++) {
+            CommandBuffer commands = all[b];
+            for(int i = 0; i < commands.size(); i++) {
+                int target = commands.getTarget(i);
+                if(commands.getOp(i) == CommandBuffer.EAT
+                        && winnerBuffer[target] == b && winnerIndex[target] == i) {
+                    if(mealCount == meals.length) {
+                        meals = Arrays.copyOf(meals, mealCount * 2);
+                    }
+                    meals[mealCount++] = commandRef(b, i);
+                }
+            }
+        }
+        // An eater can itself be eaten, so meals go in priority order.
+        sortByPriority(all, meals, mealCount);
+        for(int m = 0; m < mealCount; m++) {
+            CommandBuffer commands = all[(int) (meals[m] >>> 32)];
+            int i = (int) meals[m];
+            Organism prey = commands.getObject(i);
+            Animal eater = (Animal) commands.getSubject(i);
+            if(prey.isAlive() && eater.isAlive()) {
+                recordEvent(EventBatch.PREDATION, prey, eater.getSpecies());
+                prey.setDead();
+                eater.feed(commands.getAmount(i));
+            }
+        }
+
+        // Placements.
+        Arrays.fill(winnerBuffer, -1);
+        for(int b = 0; b < all.length; b++) {
+            CommandBuffer commands = all[b];
+            for(int i = 0; i < commands.size(); i++) {
+                int target = commands.getTarget(i);
+                if(commands.getOp(i) != CommandBuffer.EAT && commands.getSubject(i).isAlive()
+                        && ! isHeld(target)) {
+                    int w = winnerBuffer[target];
+                    if(w < 0 || precedes(commands, i, all[w], winnerIndex[target])) {
+                        winnerBuffer[target] = b;
+                        winnerIndex[target] = i;
+                    }
+                }
+            }
+        }
+        // Losing animals, as the positions of their commands.
+        long[] fallbacks = new long[16];
+        int fallbackCount = 0;
+        for(int b = 0; b < all.length; b++) {
+            CommandBuffer commands = all[b];
+            for(int i = 0; i < commands.size(); i++) {
+                int op = commands.getOp(i);
+                Organism subject = commands.getSubject(i);
+                if(op == CommandBuffer.EAT || ! subject.isAlive()) {
+                    continue;
+                }
+                int target = commands.getTarget(i);
+                if(winnerBuffer[target] == b && winnerIndex[target] == i) {
+                    super.placeOrganism(subject, locationOf(target));
+                    if(op == CommandBuffer.BIRTH) {
+                        recordEvent(EventBatch.BIRTH, subject);
+                    }
+                }
+                else if(op == CommandBuffer.MOVE) {
+                    if(subject instanceof Animal && target != commands.getPriority(i)) {
+                        if(fallbackCount == fallbacks.length) {
+                            fallbacks = Arrays.copyOf(fallbacks, fallbackCount * 2);
+                        }
+                        fallbacks[fallbackCount++] = commandRef(b, i);
+                    }
+                    else {
+                        recordEvent(EventBatch.OVERCROWDING, subject);
+                        subject.setDead();
+                    }
+                }
+            }
+        }
+        // Fallbacks to the starting position, lowest priority first.
+        sortByPriority(all, fallbacks, fallbackCount);
+        for(int f = 0; f < fallbackCount; f++) {
+            CommandBuffer commands = all[(int) (fallbacks[f] >>> 32)];
+            int i = (int) fallbacks[f];
+            Animal animal = (Animal) commands.getSubject(i);
+            int start = commands.getPriority(i);
+            if(isHeld(start)) {
+                // Overcrowding.
+                recordEvent(EventBatch.OVERCROWDING, animal.getSpecies(), start / getWidth(),
+                            start % getWidth(), -1);
+                animal.setDead();
+            }
+            else {
+                Location location = locationOf(start);
+                animal.setLocation(location);
+                super.placeOrganism(animal, location);
+            }
+        }
+
+        for(CommandBuffer commands : all) {
+            commands.clear();
+        }
+    }
+
+    /**
+     * Record an event, if anybody listens. Births and meals proposed by
+     * an organism are only recorded at the commit, if they win. An
+     * organism's own death is recorded once: while the death is held
+     * back the organism keeps its location, so a second cause of death
+     * in the same act would otherwise be recorded too.
+     * @param type The type of event, one of those defined in EventBatch.
+     * @param subject The organism it happened to.
+     * @param other The type-specific value; see EventBatch.
+     */
+    public void recordEvent(int type, Organism subject, int other)
+    {
+        CommandBuffer commands = buffer.get();
+        if(commands.getActor() != null) {
+            if(type == EventBatch.BIRTH || type == EventBatch.PREDATION) {
+                return;
+            }
+            if(subject == commands.getActor() && ! commands.recordActorDeath()) {
+                return;
+            }
+        }
+        super.recordEvent(type, subject, other);
+    }
+
+    /**
+     * Return the position of a command among all the buffers.
+     * @param b The index of the command's buffer.
+     * @param i The index of the command in its buffer.
+     * @return The buffer in the high 32 bits and the index in the low 32.
+     */
+    private static long commandRef(int b, int i)
+    {
+        return ((long) b << 32) | i;
+    }
+
+    /**
+     * Sort the positions of commands by the priorities of the commands,
+     * keeping positions of equal priority in the order they were given.
+     * @param all The buffers the commands are in.
+     * @param refs The positions of the commands, as commandRef gives them.
+     * @param count The number of positions to sort.
+     */
+    private static void sortByPriority(CommandBuffer[] all, long[] refs, int count)
+    {
+        // Each key is priority << 32 | where the command was in refs.
+        long[] keys = new long[count];
+        for(int k = 0; k < count; k++) {
+            int priority = all[(int) (refs[k] >>> 32)].getPriority((int) refs[k]);
+            keys[k] = ((long) priority << 32) | k;
+        }
+        Arrays.sort(keys);
+        long[] sorted = new long[count];
+        for(int k = 0; k < count; k++) {
+            sorted[k] = refs[(int) keys[k]];
+        }
+        System.arraycopy(sorted, 0, refs, 0, count);
+    }
+
+    /**
+     * Return whether a live organism already holds the given position.
+     * @param index The position's row * width + col.
+     * @return true if a live organism is there.
+     */
+    private boolean isHeld(int index)
+    {
+        Organism occupant = getCell(index);
+        return occupant != null && occupant.isAlive();
+    }
+
+    /**
+     * Return whether one placement takes precedence over another for the
+     * same position: the lower priority wins, and a move beats a birth by
+     * the same organism.
+     * @param a The buffer of the first placement.
+     * @param i The index of the first placement.
+     * @param b The buffer of the second placement.
+     * @param j The index of the second placement.
+     * @return true if the first placement wins.
+     */
+    private static boolean precedes(CommandBuffer a, int i, CommandBuffer b, int j)
+    {
+        if(a.getPriority(i) != b.getPriority(j)) {
+            return a.getPriority(i) < b.getPriority(j);
+        }
+        return a.getOp(i) < b.getOp(j);
+    }
+
+    /**
+     * @param location A location in the field.
+     * @return The location's row * width + col.
+     */
+    private int indexOf(Location location)
+    {
+        return location.row() * getWidth() + location.col();
+    }
+
+    /**
+     * @param index A position's row * width + col.
+     * @return The location of the position.
+     */
+    private Location locationOf(int index)
+    {
+        return new Location(index / getWidth(), index % getWidth());
+    }
+}
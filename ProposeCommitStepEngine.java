@@ -0,0 +1,141 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A step engine that runs each step in two phases.
+ * In the propose phase every acting organism acts against a
+ * ProposalField, which records its moves, births and meals instead of
+ * applying them, and each organism holds back its own death and move
+ * until the commit. Nothing the organisms read changes during this
+ * phase, so the acting organisms are simply split into chunks that run
+ * concurrently on a ForkJoinPool. In the commit phase the field resolves
+ * the conflicts and applies all the commands in one batch. Infection
+ * needs no commands of its own: Disease already spreads it in a
+ * separate pass over the committed state.
+ *
+ * An organism only sees the commands of others once they are
+ * committed, so, unlike with the serial engine, two animals can both
+ * see a position as free, or the same prey as alive, within a step,
+ * and an animal can still find prey that dies of old age in the same
+ * step.
+ * The commit phase settles every such conflict by where the organisms
+ * started the step.
+ *
+ * Worker threads have no random streams bound, so each organism's act
+ * is given its own stream, derived from the simulator's streams for
+ * the step and the organism's place in the order it was given.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class ProposeCommitStepEngine implements StepEngine
+{
+    // The number of organisms below which a chunk is not split further.
+    private static final int CHUNK_SIZE = 256;
+
+    // The pool the propose phase runs on.
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a propose/commit step engine on the common pool.
+     */
+    public ProposeCommitStepEngine()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a propose/commit step engine.
+     * @param pool The pool to run the propose phase on.
+     */
+    public ProposeCommitStepEngine(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Let the given organisms propose their actions, then commit them.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built. Must come from createField.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                     int time, Weather weather)
+    {
+        ProposalField proposals = (ProposalField) nextFieldState;
+        if(! acting.isEmpty()) {
+            pool.invoke(new ProposeTask(acting, Randomizer.stepSeed(), 0, acting.size(),
+                                        currentField, proposals, time, weather));
+        }
+        proposals.commit();
+    }
+
+    /**
+     * Create an empty field that records proposals.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @return A new ProposalField.
+     */
+    public Field createField(int depth, int width)
+    {
+        return new ProposalField(depth, width);
+    }
+
+    /**
+     * Let a range of the acting organisms propose their actions,
+     * splitting the range in half until it is small enough.
+     */
+    private static class ProposeTask extends RecursiveAction
+    {
+        private final List<Organism> acting;
+        private final long stepSeed;
+        private final int from, to;
+        private final Field currentField;
+        private final ProposalField proposals;
+        private final int time;
+        private final Weather weather;
+
+        /**
+         * Create a task for the organisms in [from, to).
+         */
+        ProposeTask(List<Organism> acting, long stepSeed, int from, int to,
+                    Field currentField, ProposalField proposals, int time, Weather weather)
+        {
+            this.acting = acting;
+            this.stepSeed = stepSeed;
+            this.from = from;
+            this.to = to;
+            this.currentField = currentField;
+            this.proposals = proposals;
+            this.time = time;
+            this.weather = weather;
+        }
+
+        /**
+         * Let the organisms act, forking halves while the range is large.
+         */
+        protected void compute()
+        {
+            if(to - from <= CHUNK_SIZE) {
+                Random previous = Randomizer.bind(null);
+                for(int i = from; i < to; i++) {
+                    Organism organism = acting.get(i);
+                    proposals.setActor(organism);
+                    Randomizer.bind(Randomizer.stream(stepSeed, i));
+                    organism.act(currentField, proposals, time, weather);
+                }
+                Randomizer.bind(previous);
+                proposals.clearActor();
+            }
+            else {
+                int middle = (from + to) / 2;
+                invokeAll(new ProposeTask(acting, stepSeed, from, middle, currentField, proposals, time, weather),
+                          new ProposeTask(acting, stepSeed, middle, to, currentField, proposals, time, weather));
+            }
+        }
+    }
+}
@@ -16,6 +16,28 @@ public class Randomizer
     private static final Random rand = new Random(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = false;
+    // The stream bound to each thread, if any. While one is bound, every
+    // generator handed out by getRandom draws from it instead.
+    private static final ThreadLocal<Random> bound = new ThreadLocal<>();
+
+    // The purposes draws are made for. Each purpose can draw from its
+    // own stream, so that a change in how many draws one purpose makes
+    // does not shift the draws of the others.
+    public static final int POPULATE = 0;
+    public static final int BREED = 1;
+    public static final int INFECT = 2;
+    public static final int MOVEMENT = 3;
+    public static final int WEATHER = 4;
+    public static final int OTHER = 5;
+    // The number of purposes.
+    public static final int PURPOSES = 6;
+    // The name of each purpose, indexed by purpose. Substreams are
+    // derived from the names, so they do not depend on the numbering.
+    private static final String[] PURPOSE_NAMES =
+        { "populate", "breed", "infect", "movement", "weather", "other" };
+    // The streams bound to each thread for each purpose, if any. They
+    // are used only while no single stream is bound.
+    private static final ThreadLocal<Random[]> boundStreams = new ThreadLocal<>();
 
     /**
      * Constructor for objects of class Randomizer
@@ -29,14 +51,129 @@ public class Randomizer
      * @return A random object.
      */
     public static Random getRandom()
+    {
+        return getRandom(OTHER);
+    }
+
+    /**
+     * Provide a random generator for draws of the given purpose.
+     * @param purpose The purpose, e.g. Randomizer.BREED.
+     * @return A random object.
+     */
+    public static Random getRandom(int purpose)
     {
         if(useShared) {
-            return rand;
+            return new BoundRandom(rand, purpose);
         }
         else {
-            return new Random();
+            return new BoundRandom(new Random(), purpose);
         }
     }
+
+    /**
+     * Make every generator from getRandom draw from the given stream
+     * on the calling thread, until another stream is bound. Engines use
+     * this to give each organism's act its own reproducible stream, and
+     * simulators to keep their draws apart from other simulators'.
+     * @param stream The stream to draw from, or null to let the
+     *               generators draw from their own state again.
+     * @return The stream bound before, or null if there was none, so
+     *         that it can be bound again afterwards.
+     */
+    public static Random bind(Random stream)
+    {
+        Random previous = bound.get();
+        if(stream == null) {
+            bound.remove();
+        }
+        else {
+            bound.set(stream);
+        }
+        return previous;
+    }
+
+    /**
+     * Make the generators from getRandom draw from the stream of their
+     * purpose on the calling thread, until other streams are bound.
+     * A stream bound with bind takes precedence over these.
+     * @param streams The stream of each purpose, indexed by purpose, or
+     *                null to let the generators draw from their own
+     *                state again.
+     * @return The streams bound before, or null if there were none, so
+     *         that they can be bound again afterwards.
+     */
+    public static Random[] bindStreams(Random[] streams)
+    {
+        Random[] previous = boundStreams.get();
+        if(streams == null) {
+            boundStreams.remove();
+        }
+        else {
+            boundStreams.set(streams);
+        }
+        return previous;
+    }
+
+    /**
+     * Create the stream of one purpose for one index, e.g. one step.
+     * Runs with the same seed draw the same numbers for a purpose at an
+     * index, however many draws they made for other purposes or at
+     * other indices.
+     * @param seed The seed of the run.
+     * @param purpose The purpose, e.g. Randomizer.BREED.
+     * @param index The index, e.g. the step.
+     * @return A new stream.
+     */
+    public static Random substream(long seed, int purpose, int index)
+    {
+        long purposeSeed = stream(seed, PURPOSE_NAMES[purpose].hashCode()).nextLong();
+        return stream(purposeSeed, index);
+    }
+
+    /**
+     * Create the streams of every purpose for one index.
+     * @param seed The seed of the run.
+     * @param index The index, e.g. the step.
+     * @return The streams, indexed by purpose.
+     */
+    public static Random[] substreams(long seed, int index)
+    {
+        Random[] streams = new Random[PURPOSES];
+        for(int purpose = 0; purpose < PURPOSES; purpose++) {
+            streams[purpose] = substream(seed, purpose, index);
+        }
+        return streams;
+    }
+
+    /**
+     * Draw the seed of a step's per-organism streams (see stream) from
+     * the calling thread's streams. A simulator binds the streams of
+     * its seed and step before it steps, so an engine that hands acts
+     * to other threads, which have no streams bound, can give each act
+     * a stream that depends only on the seed, the step and the act's
+     * place in the order.
+     * @return The seed of the step.
+     */
+    public static long stepSeed()
+    {
+        return getRandom(OTHER).nextLong();
+    }
+
+    /**
+     * Create the stream for one of the draws of a step, e.g. one
+     * organism's act. Streams for neighbouring indices are unrelated.
+     * @param stepSeed The seed of the step.
+     * @param index The index of the draw within the step.
+     * @return A new stream.
+     */
+    public static Random stream(long stepSeed, int index)
+    {
+        // The SplitMix64 finaliser, to spread consecutive indices apart.
+        long z = stepSeed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
     
     /**
      * Reset the randomization.
@@ -49,4 +186,43 @@ public class Randomizer
             rand.setSeed(SEED);
         }
     }
+
+    /**
+     * A generator that draws from the calling thread's bound stream,
+     * if there is one, then from the stream bound for its purpose, and
+     * from its own generator otherwise.
+     */
+    private static class BoundRandom extends Random
+    {
+        // The generator drawn from when no stream is bound.
+        private final Random own;
+        // The purpose of the generator's draws.
+        private final int purpose;
+
+        /**
+         * Create a generator falling back to the given one.
+         * @param own The generator drawn from when no stream is bound.
+         * @param purpose The purpose of the generator's draws.
+         */
+        BoundRandom(Random own, int purpose)
+        {
+            this.own = own;
+            this.purpose = purpose;
+        }
+
+        /**
+         * Generate the next random bits.
+         * @param bits The number of random bits.
+         * @return The random bits.
+         */
+        protected int next(int bits)
+        {
+            Random stream = bound.get();
+            if(stream == null) {
+                Random[] streams = boundStreams.get();
+                stream = streams != null ? streams[purpose] : own;
+            }
+            return stream.nextInt() >>> (32 - bits);
+        }
+    }
 }
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A calendar queue of dormant organisms.
+ * Organisms that would do nothing but age over the coming hours (sleeping
+ * animals, plants too young to breed) are filed under the step at which
+ * they next have something to do. Until then they are carried forward
+ * into each new field state without acting, and the hours they skipped
+ * are applied in one go when they wake.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class Scheduler
+{
+    // The number of buckets in the calendar. Entries due further ahead
+    // than this simply stay in their bucket until their step comes round.
+    private static final int BUCKETS = 32;
+
+    // The dormant organisms, bucketed by the step at which they wake.
+    private final List<List<Entry>> buckets;
+    // The number of organisms currently dormant.
+    private int size;
+    // Whether each bucket's list is shared with a forked scheduler, and
+    // must be copied before it is changed.
+    private final boolean[] shared;
+
+    /**
+     * A dormant organism and when it wakes.
+     * @param organism The dormant organism.
+     * @param wakeStep The step at which the organism acts again.
+     * @param hours The number of hours it is dormant for.
+     */
+    private record Entry(Organism organism, int wakeStep, int hours)
+    {
+    }
+
+    /**
+     * Create an empty scheduler.
+     */
+    public Scheduler()
+    {
+        buckets = new ArrayList<>(BUCKETS);
+        for(int i = 0; i < BUCKETS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        shared = new boolean[BUCKETS];
+    }
+
+    /**
+     * Create a scheduler sharing the buckets of another.
+     * @param other The scheduler to share with.
+     */
+    private Scheduler(Scheduler other)
+    {
+        buckets = new ArrayList<>(other.buckets);
+        size = other.size;
+        shared = new boolean[BUCKETS];
+        Arrays.fill(shared, true);
+    }
+
+    /**
+     * Return a scheduler holding the same dormant organisms. The two
+     * share their buckets until either changes one, so forking costs
+     * nothing however many organisms are dormant.
+     * @return The new scheduler.
+     */
+    public Scheduler fork()
+    {
+        Arrays.fill(shared, true);
+        return new Scheduler(this);
+    }
+
+    /**
+     * Replace every dormant organism by another, e.g. by its copy in a
+     * forked field.
+     * @param replacement Gives the organism to file in place of each one.
+     */
+    public void resolve(UnaryOperator<Organism> replacement)
+    {
+        for(int i = 0; i < BUCKETS; i++) {
+            List<Entry> resolved = new ArrayList<>(buckets.get(i).size());
+            for(Entry entry : buckets.get(i)) {
+                resolved.add(new Entry(replacement.apply(entry.organism()),
+                                       entry.wakeStep(), entry.hours()));
+            }
+            buckets.set(i, resolved);
+            shared[i] = false;
+        }
+    }
+
+    /**
+     * File an organism as dormant.
+     * @param organism The organism to put to sleep.
+     * @param step The current step of the simulation.
+     * @param hours The number of hours, starting at this step, it is dormant for.
+     */
+    public void schedule(Organism organism, int step, int hours)
+    {
+        int wakeStep = step + hours;
+        int index = wakeStep % BUCKETS;
+        if(shared[index]) {
+            buckets.set(index, new ArrayList<>(buckets.get(index)));
+            shared[index] = false;
+        }
+        buckets.get(index).add(new Entry(organism, wakeStep, hours));
+        size++;
+    }
+
+    /**
+     * Wake the organisms that are due at the given step, applying the
+     * hours they were dormant for. Organisms that died while dormant
+     * (e.g. were eaten) are dropped.
+     * @param step The current step of the simulation.
+     * @return The organisms that woke up and are still alive.
+     */
+    public List<Organism> wake(int step)
+    {
+        List<Organism> woken = new ArrayList<>();
+        List<Entry> bucket = buckets.get(step % BUCKETS);
+        List<Entry> later = new ArrayList<>();
+        for(Entry entry : bucket) {
+            if(entry.wakeStep() != step) {
+                later.add(entry);
+            }
+            else {
+                Organism organism = entry.organism();
+                if(organism.isAlive()) {
+                    organism.wake(entry.hours());
+                    if(organism.isAlive()) {
+                        woken.add(organism);
+                    }
+                }
+            }
+        }
+        size -= bucket.size() - later.size();
+        buckets.set(step % BUCKETS, later);
+        shared[step % BUCKETS] = false;
+        return woken;
+    }
+
+    /**
+     * Put off the waking of every dormant organism by a number of steps,
+     * e.g. when the simulation skips them. Each still sleeps for as many
+     * steps as it had left.
+     * @param steps The number of steps.
+     */
+    public void delay(int steps)
+    {
+        List<List<Entry>> delayed = new ArrayList<>(BUCKETS);
+        for(int i = 0; i < BUCKETS; i++) {
+            delayed.add(new ArrayList<>());
+        }
+        for(List<Entry> bucket : buckets) {
+            for(Entry entry : bucket) {
+                int wakeStep = entry.wakeStep() + steps;
+                delayed.get(wakeStep % BUCKETS).add(new Entry(entry.organism(), wakeStep, entry.hours()));
+            }
+        }
+        for(int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, delayed.get(i));
+        }
+        Arrays.fill(shared, false);
+    }
+
+    /**
+     * Carry every live dormant organism forward, in place, into the
+     * next state of the field.
+     * @param nextFieldState The new state being built.
+     */
+    public void carryForward(Field nextFieldState)
+    {
+        for(List<Entry> bucket : buckets) {
+            for(Entry entry : bucket) {
+                Organism organism = entry.organism();
+                if(organism.isAlive()) {
+                    nextFieldState.carryOrganism(organism, organism.getLocation());
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of organisms currently dormant.
+     * @return The number of dormant organisms.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Forget all dormant organisms.
+     */
+    public void clear()
+    {
+        for(int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, new ArrayList<>());
+        }
+        Arrays.fill(shared, false);
+        size = 0;
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A step engine that lets the organisms act one after another,
+ * in the order they are given, on the calling thread.
+ * Created with a seed, the engine gives each organism's act its own
+ * random stream, derived from the seed, the step and the organism's
+ * place in the order, so runs can be repeated exactly.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class SerialStepEngine implements StepEngine
+{
+    // The generator of each step's seed, or null to use the shared generators.
+    private final Random seeds;
+
+    /**
+     * Create a serial step engine drawing from the shared generators.
+     */
+    public SerialStepEngine()
+    {
+        seeds = null;
+    }
+
+    /**
+     * Create a serial step engine giving each act its own stream.
+     * @param seed The seed the streams are derived from.
+     */
+    public SerialStepEngine(long seed)
+    {
+        seeds = new Random(seed);
+    }
+
+    /**
+     * Let the given organisms act for one step, in order.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                     int time, Weather weather)
+    {
+        if (seeds == null) {
+            for (Organism organism : acting) {
+                organism.act(currentField, nextFieldState, time, weather);
+            }
+            return;
+        }
+        long stepSeed = seeds.nextLong();
+        Random previous = Randomizer.bind(null);
+        for (int i = 0; i < acting.size(); i++) {
+            Randomizer.bind(Randomizer.stream(stepSeed, i));
+            acting.get(i).act(currentField, nextFieldState, time, weather);
+        }
+        Randomizer.bind(previous);
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publish each completed state of a simulation into a memory-mapped
+ * file, so that a viewer in another process (see SharedFieldViewer) can
+ * show a run without the run drawing anything itself.
+ *
+ * The file holds a header, then the cells in row-major order, one byte
+ * each: 0 for an empty position, otherwise the species id of the live
+ * organism there plus one. The header holds, at the given offsets, a
+ * magic number, the depth and width, the step, a sequence number and the
+ * population of each species. The sequence number works as a seqlock:
+ * it is odd while a state is being written and even once it is complete,
+ * so a reader that sees the same even number before and after reading
+ * knows it has read one whole state.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class SharedFieldPublisher implements AutoCloseable
+{
+    // The layout of the header.
+    static final int MAGIC = 0x53415641;
+    static final int MAGIC_OFFSET = 0;
+    static final int DEPTH_OFFSET = 4;
+    static final int WIDTH_OFFSET = 8;
+    static final int STEP_OFFSET = 12;
+    static final int SEQUENCE_OFFSET = 16;
+    static final int COUNTS_OFFSET = 24;
+    static final int CELLS_OFFSET = 64;
+    // Access to the sequence number with memory ordering, so that it can
+    // be shared with another process.
+    static final VarHandle SEQUENCE =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // The size of the field published.
+    private final int depth, width;
+    // The file.
+    private final FileChannel channel;
+    // The file, mapped into memory.
+    private final MappedByteBuffer buffer;
+    // The sequence number of the last state published.
+    private long sequence;
+    // The cells of the state being published.
+    private final byte[] cells;
+
+    /**
+     * Create a publisher writing to the given file, which is created or
+     * replaced.
+     * @param path The file.
+     * @param depth Depth of the field published.
+     * @param width Width of the field published.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public SharedFieldPublisher(Path path, int depth, int width) throws IOException
+    {
+        this.depth = depth;
+        this.width = width;
+        cells = new byte[depth * width];
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CELLS_OFFSET + (long) depth * width);
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(DEPTH_OFFSET, depth);
+        buffer.putInt(WIDTH_OFFSET, width);
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, 0L);
+        // Written last, so a viewer sees a complete header once it sees this.
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    /**
+     * Publish a state of the field.
+     * @param step The step the state is at.
+     * @param field The state. It must have the publisher's size.
+     */
+    public void publish(int step, Field field)
+    {
+        if(field.getDepth() != depth || field.getWidth() != width) {
+            System.out.println("The field does not match the published size.");
+            return;
+        }
+        // Odd while writing.
+        SEQUENCE.setVolatile(buffer, SEQUENCE_OFFSET, ++sequence);
+        VarHandle.storeStoreFence();
+        field.packCells(cells);
+        int[] counts = new int[Species.COUNT];
+        for(int row = 0; row < depth; row++) {
+            for(int col = field.nextOccupiedCol(row, 0); col < width; col = field.nextOccupiedCol(row, col + 1)) {
+                int cell = cells[row * width + col];
+                if(cell != 0) {
+                    counts[cell - 1]++;
+                }
+            }
+        }
+        buffer.put(CELLS_OFFSET, cells);
+        for(int species = 0; species < Species.COUNT; species++) {
+            buffer.putInt(COUNTS_OFFSET + 4 * species, counts[species]);
+        }
+        buffer.putInt(STEP_OFFSET, step);
+        // Even again once the state is complete.
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, ++sequence);
+    }
+
+    /**
+     * Close the file. The viewer can go on showing the last state.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,142 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.swing.*;
+
+/**
+ * Show a simulation running in another process, from the file it
+ * publishes to with a SharedFieldPublisher. The viewer maps the file
+ * and draws straight from it, so the simulation neither draws nor
+ * copies anything for it, and never waits for it. The viewer looks for
+ * a new state several times a second; a state that was overwritten
+ * while it was being drawn is thrown away and drawn again next time.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class SharedFieldViewer extends JFrame
+{
+    // The time between looks for a new state, in milliseconds.
+    private static final int REFRESH_INTERVAL = 50;
+    // The largest size of a cell on screen, in pixels.
+    private static final int MAX_SCALE = 6;
+    // The colours of the cells, indexed by the cell's byte: empty, then
+    // each species in id order. The same colours as SimulatorView.
+    private static final int[] COLORS = {
+        Color.white.getRGB(), Color.yellow.getRGB(), Color.orange.getRGB(), Color.red.getRGB(),
+        Color.blue.getRGB(), Color.gray.getRGB(), Color.green.getRGB(), Color.magenta.getRGB() };
+
+    // The published file, mapped into memory.
+    private final MappedByteBuffer buffer;
+    // The size of the field shown.
+    private final int depth, width;
+    // The state being drawn, one pixel per cell.
+    private BufferedImage drawing;
+    // The last whole state drawn.
+    private BufferedImage shown;
+    // The sequence number of the state shown.
+    private long shownSequence = -1;
+    private final JLabel stepLabel;
+    private final JLabel population;
+    private final JPanel fieldView;
+
+    /**
+     * Show the simulation publishing to the file given as the only argument.
+     * @param args The arguments.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        SharedFieldViewer viewer = new SharedFieldViewer(Path.of(args[0]));
+        new javax.swing.Timer(REFRESH_INTERVAL, event -> viewer.refresh()).start();
+    }
+
+    /**
+     * Create a viewer of a published file.
+     * @param path The file.
+     * @throws IOException If the file cannot be mapped, or is not a
+     *                     published field.
+     */
+    public SharedFieldViewer(Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        if(buffer.capacity() < SharedFieldPublisher.CELLS_OFFSET
+                || buffer.getInt(SharedFieldPublisher.MAGIC_OFFSET) != SharedFieldPublisher.MAGIC) {
+            throw new IOException(path + " is not a published field.");
+        }
+        depth = buffer.getInt(SharedFieldPublisher.DEPTH_OFFSET);
+        width = buffer.getInt(SharedFieldPublisher.WIDTH_OFFSET);
+        drawing = new BufferedImage(width, depth, BufferedImage.TYPE_INT_RGB);
+        shown = new BufferedImage(width, depth, BufferedImage.TYPE_INT_RGB);
+
+        setTitle("Savannah Simulation - " + path.getFileName());
+        stepLabel = new JLabel("Step: ", JLabel.CENTER);
+        population = new JLabel("Population: ", JLabel.CENTER);
+        int scale = Math.max(1, Math.min(MAX_SCALE, 900 / Math.max(depth, width)));
+        fieldView = new JPanel() {
+            public void paintComponent(Graphics g)
+            {
+                g.drawImage(shown, 0, 0, getWidth(), getHeight(), null);
+            }
+        };
+        fieldView.setPreferredSize(new Dimension(width * scale, depth * scale));
+
+        setLocation(100, 50);
+        Container contents = getContentPane();
+        contents.add(stepLabel, BorderLayout.NORTH);
+        contents.add(fieldView, BorderLayout.CENTER);
+        contents.add(population, BorderLayout.SOUTH);
+        pack();
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setVisible(true);
+    }
+
+    /**
+     * Draw the latest state, if a new one has been published and it is
+     * not overwritten while being drawn.
+     */
+    public void refresh()
+    {
+        long sequence = (long) SharedFieldPublisher.SEQUENCE.getAcquire(
+            buffer, SharedFieldPublisher.SEQUENCE_OFFSET);
+        if(sequence == shownSequence || sequence % 2 != 0) {
+            return;
+        }
+        int[] pixels = ((DataBufferInt) drawing.getRaster().getDataBuffer()).getData();
+        int cells = depth * width;
+        for(int i = 0; i < cells; i++) {
+            pixels[i] = COLORS[buffer.get(SharedFieldPublisher.CELLS_OFFSET + i)];
+        }
+        int step = buffer.getInt(SharedFieldPublisher.STEP_OFFSET);
+        StringBuilder details = new StringBuilder("Population: ");
+        for(int species = 0; species < Species.COUNT; species++) {
+            details.append(Species.getName(species)).append(": ")
+                   .append(buffer.getInt(SharedFieldPublisher.COUNTS_OFFSET + 4 * species))
+                   .append(' ');
+        }
+        VarHandle.loadLoadFence();
+        if((long) SharedFieldPublisher.SEQUENCE.getVolatile(
+                buffer, SharedFieldPublisher.SEQUENCE_OFFSET) != sequence) {
+            // Overwritten while drawing.
+            return;
+        }
+        BufferedImage done = drawing;
+        drawing = shown;
+        shown = done;
+        shownSequence = sequence;
+        stepLabel.setText("Step: " + step);
+        population.setText(details.toString());
+        fieldView.repaint();
+    }
+}
@@ -0,0 +1,412 @@
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * A simulation to embed in another program. Unlike Simulator, it has no
+ * window and prints nothing: the program steps it, takes snapshots of
+ * it, and observes it through a stream of per-step summaries.
+ *
+ * The stream applies backpressure without ever holding up the
+ * simulation. Each subscriber gets summaries only as fast as it
+ * requests them; those it has not yet taken wait in a buffer of its
+ * own, and once that is full, new summaries are either dropped or
+ * replace the oldest waiting ones, as the subscriber chooses. A
+ * subscriber sees that it missed summaries from gaps in their steps.
+ * Summaries are delivered on an executor, one at a time per subscriber.
+ *
+ * The engine itself must be used from one thread at a time; subscribers
+ * may request and cancel from any thread.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class SimulationEngine implements Flow.Publisher<SimulationEngine.Summary>, AutoCloseable
+{
+    // The summaries each subscriber can have waiting, unless it says otherwise.
+    private static final int DEFAULT_BUFFER = 16;
+
+    // The simulation.
+    private final Simulator simulator;
+    // Where summaries are delivered.
+    private final Executor executor;
+    // The current subscriptions.
+    private final List<Channel> channels;
+    // The summary of the last step it was needed for.
+    private Summary summary;
+    // Whether the engine has been closed.
+    private boolean closed;
+
+    /**
+     * What to do with a new summary when a subscriber's buffer is full.
+     */
+    public enum Overflow
+    {
+        // Drop the new summary, keeping the oldest waiting ones.
+        DROP,
+        // Drop the oldest waiting summary, so the subscriber always gets
+        // the most recent state. With a buffer of 1, the subscriber gets
+        // the latest summary each time it asks.
+        COALESCE
+    }
+
+    /**
+     * The state of the simulation after a step.
+     * @param step The step.
+     * @param counts The population of each species, indexed by species id.
+     * @param viable Whether every role still has a live organism.
+     */
+    public record Summary(int step, int[] counts, boolean viable)
+    {
+        /**
+         * Return the population of a species.
+         * @param species The species id.
+         * @return The number of live organisms of the species.
+         */
+        public int getCount(int species)
+        {
+            return counts[species];
+        }
+    }
+
+    /**
+     * The cells of the field at a step.
+     * @param step The step.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param cells One byte per position in row-major order: 0 for an
+     *              empty position, otherwise the species id of the live
+     *              organism there plus one.
+     */
+    public record Snapshot(int step, int depth, int width, byte[] cells)
+    {
+        /**
+         * Return the species at a position.
+         * @param row The row.
+         * @param col The column.
+         * @return The species id of the live organism there, or -1 if
+         *         there is none.
+         */
+        public int getSpecies(int row, int col)
+        {
+            return cells[row * width + col] - 1;
+        }
+    }
+
+    /**
+     * Create an engine running a new simulation.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed of the simulation.
+     * @param parameters The parameters to run with.
+     */
+    public SimulationEngine(int depth, int width, long seed, Parameters parameters)
+    {
+        this(new Simulator(depth, width, seed, false, parameters), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an engine running a simulation.
+     * @param simulator The simulation, which should have no view. Only the
+     *                  engine should step it from now on.
+     * @param executor Where summaries are delivered.
+     */
+    public SimulationEngine(Simulator simulator, Executor executor)
+    {
+        this.simulator = simulator;
+        this.executor = executor;
+        channels = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Run a number of steps.
+     * @param n The number of steps.
+     * @return The summary of the last step.
+     * @throws IllegalStateException if the engine has been closed.
+     */
+    public Summary step(int n)
+    {
+        checkOpen();
+        for(int i = 0; i < n; i++) {
+            stepOnce();
+        }
+        return getSummary();
+    }
+
+    /**
+     * Run until a condition holds of a step's summary, or the field stops
+     * being viable. The condition is checked before the first step too.
+     * @param condition The condition.
+     * @return The summary of the last step.
+     * @throws IllegalStateException if the engine has been closed.
+     */
+    public Summary runUntil(Predicate<Summary> condition)
+    {
+        checkOpen();
+        Summary current = getSummary();
+        while(current.viable() && ! condition.test(current)) {
+            stepOnce();
+            current = getSummary();
+        }
+        return current;
+    }
+
+    /**
+     * Return the summary of the current step.
+     * @return The summary.
+     */
+    public Summary getSummary()
+    {
+        if(summary == null || summary.step() != simulator.getStep()) {
+            int[] counts = simulator.getField().countSpecies();
+            summary = new Summary(simulator.getStep(), counts, Species.isViable(counts));
+        }
+        return summary;
+    }
+
+    /**
+     * Take a snapshot of the field.
+     * @return The snapshot.
+     */
+    public Snapshot snapshot()
+    {
+        Field field = simulator.getField();
+        byte[] cells = new byte[field.getDepth() * field.getWidth()];
+        field.packCells(cells);
+        return new Snapshot(simulator.getStep(), field.getDepth(), field.getWidth(), cells);
+    }
+
+    /**
+     * Return the simulation, e.g. to change its step engine or parameters.
+     * @return The simulation.
+     */
+    public Simulator getSimulator()
+    {
+        return simulator;
+    }
+
+    /**
+     * Subscribe to the summaries of the steps run from now on, with a
+     * buffer of DEFAULT_BUFFER that coalesces.
+     * @param subscriber The subscriber.
+     * @throws IllegalStateException if the engine has been closed.
+     */
+    public void subscribe(Flow.Subscriber<? super Summary> subscriber)
+    {
+        subscribe(subscriber, DEFAULT_BUFFER, Overflow.COALESCE);
+    }
+
+    /**
+     * Subscribe to the summaries of the steps run from now on.
+     * @param subscriber The subscriber.
+     * @param bufferSize The most summaries that can wait for the
+     *                   subscriber to request them. Must be at least 1.
+     * @param overflow What to do with new summaries once the buffer is full.
+     * @throws IllegalArgumentException if bufferSize is less than 1.
+     * @throws IllegalStateException if the engine has been closed.
+     */
+    public void subscribe(Flow.Subscriber<? super Summary> subscriber, int bufferSize, Overflow overflow)
+    {
+        Objects.requireNonNull(subscriber);
+        if(bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer must hold at least one summary: " + bufferSize);
+        }
+        checkOpen();
+        Channel channel = new Channel(subscriber, bufferSize, overflow);
+        channels.add(channel);
+        subscriber.onSubscribe(channel);
+    }
+
+    /**
+     * Complete every subscription. No more steps can be run.
+     */
+    public void close()
+    {
+        closed = true;
+        for(Channel channel : channels) {
+            channel.complete();
+        }
+        channels.clear();
+    }
+
+    /**
+     * Run a step and offer its summary to the subscribers.
+     */
+    private void stepOnce()
+    {
+        simulator.simulateOneStep();
+        if(! channels.isEmpty()) {
+            Summary current = getSummary();
+            for(Channel channel : channels) {
+                channel.offer(current);
+            }
+        }
+    }
+
+    /**
+     * Fail if the engine has been closed.
+     * @throws IllegalStateException if it has.
+     */
+    private void checkOpen()
+    {
+        if(closed) {
+            throw new IllegalStateException("The engine has been closed.");
+        }
+    }
+
+    /**
+     * A subscription, with the summaries waiting for its subscriber.
+     */
+    private class Channel implements Flow.Subscription
+    {
+        // The subscriber.
+        private final Flow.Subscriber<? super Summary> subscriber;
+        // The most summaries that can wait.
+        private final int bufferSize;
+        // What to do when the buffer is full.
+        private final Overflow overflow;
+        // The summaries waiting. Guarded by this.
+        private final ArrayDeque<Summary> waiting;
+        // The summaries requested and not yet delivered. Guarded by this.
+        private long demand;
+        // Whether to complete once the waiting summaries are delivered.
+        private boolean completing;
+        // Whether the subscriber has cancelled or been completed.
+        private volatile boolean done;
+        // The number of times the channel has been asked to deliver since
+        // it last finished delivering; nonzero while delivering.
+        private final AtomicInteger deliveries;
+
+        /**
+         * Create a subscription.
+         * @param subscriber The subscriber.
+         * @param bufferSize The most summaries that can wait.
+         * @param overflow What to do when the buffer is full.
+         */
+        Channel(Flow.Subscriber<? super Summary> subscriber, int bufferSize, Overflow overflow)
+        {
+            this.subscriber = subscriber;
+            this.bufferSize = bufferSize;
+            this.overflow = overflow;
+            waiting = new ArrayDeque<>();
+            deliveries = new AtomicInteger();
+        }
+
+        /**
+         * Request more summaries.
+         * @param n The number of summaries. Must be positive.
+         */
+        public void request(long n)
+        {
+            if(n <= 0) {
+                cancel();
+                executor.execute(() -> subscriber.onError(
+                    new IllegalArgumentException("Requests must be positive.")));
+                return;
+            }
+            synchronized(this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            deliver();
+        }
+
+        /**
+         * Stop receiving summaries.
+         */
+        public void cancel()
+        {
+            done = true;
+            channels.remove(this);
+        }
+
+        /**
+         * Offer a new summary. Never waits for the subscriber.
+         * @param summary The summary.
+         */
+        void offer(Summary summary)
+        {
+            synchronized(this) {
+                if(waiting.size() == bufferSize) {
+                    if(overflow == Overflow.DROP) {
+                        return;
+                    }
+                    waiting.poll();
+                }
+                waiting.add(summary);
+            }
+            deliver();
+        }
+
+        /**
+         * Complete the subscription once the waiting summaries are delivered.
+         */
+        void complete()
+        {
+            synchronized(this) {
+                completing = true;
+            }
+            deliver();
+        }
+
+        /**
+         * Make sure the waiting summaries are being delivered, as far as
+         * they have been requested.
+         */
+        private void deliver()
+        {
+            if(deliveries.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Deliver the waiting summaries that have been requested, one at a
+         * time, until nobody has asked for more deliveries.
+         */
+        private void drain()
+        {
+            int asked = deliveries.get();
+            while(true) {
+                while(! done) {
+                    Summary next;
+                    boolean finished = false;
+                    synchronized(this) {
+                        next = demand > 0 ? waiting.poll() : null;
+                        if(next != null) {
+                            demand--;
+                        }
+                        else if(completing && waiting.isEmpty()) {
+                            finished = true;
+                        }
+                    }
+                    if(finished) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                    else if(next == null) {
+                        break;
+                    }
+                    else {
+                        try {
+                            subscriber.onNext(next);
+                        }
+                        catch(RuntimeException e) {
+                            cancel();
+                            subscriber.onError(e);
+                        }
+                    }
+                }
+                asked = deliveries.addAndGet(-asked);
+                if(asked == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
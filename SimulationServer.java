@@ -0,0 +1,581 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control many simulations at once over HTTP on the loopback interface.
+ * Each simulation runs on a thread of its own; requests are handled on
+ * virtual threads, so a client streaming stats or waiting for a
+ * snapshot holds no more than a virtual thread. Virtual threads need
+ * Java 21; on older runtimes requests are handled on a pool of
+ * ordinary threads instead, and the server still compiles on Java 17.
+ *
+ * Handlers never touch a simulator. They pass commands to its thread
+ * through a queue, and read the status its thread publishes after every
+ * step and command, so a slow client never holds up a simulation. The
+ * populations in the status are counted from the organisms stored into
+ * the field (see Field.countSpecies), not from every position. If a step
+ * throws, the simulation stops for good, and its status gives the error.
+ *
+ * The requests are:
+ * - POST /sims?depth=D&amp;width=W&amp;seed=S creates a simulation and
+ *   returns its status; every argument is optional.
+ * - GET /sims returns the status of every simulation.
+ * - GET /sims/ID returns the status of one.
+ * - POST /sims/ID/step?n=N runs N more steps (1 if not given).
+ * - POST /sims/ID/run runs until paused or no longer viable.
+ * - POST /sims/ID/pause stops running, dropping steps not yet run.
+ * - GET /sims/ID/snapshot returns the field: its step, depth and width
+ *   as ints, then one byte per position in row-major order, 0 for empty,
+ *   otherwise the species id of the live organism there plus one.
+ * - GET /sims/ID/stream?n=N streams the status as one line of JSON per
+ *   change, until N lines (unlimited if not given) or the client leaves.
+ * - DELETE /sims/ID stops and removes a simulation.
+ *
+ * A number argument that is not a whole number gets a 400 response
+ * naming it. Asking a failed simulation to step or run gets a 409
+ * response with its status.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class SimulationServer implements AutoCloseable
+{
+    // The port used if none is given.
+    private static final int DEFAULT_PORT = 8086;
+    // The size of fields created without one.
+    private static final int DEFAULT_DEPTH = 100;
+    private static final int DEFAULT_WIDTH = 100;
+    // The largest number of positions a field may have.
+    private static final long MAX_CELLS = 1L << 26;
+    // How often a stream looks for a new status, in milliseconds.
+    private static final long STREAM_INTERVAL = 20;
+    // How long to wait for a simulation to take a snapshot, in seconds.
+    private static final long SNAPSHOT_TIMEOUT = 30;
+
+    // The server.
+    private final HttpServer server;
+    // The virtual threads that handle requests.
+    private final ExecutorService handlers;
+    // The simulations, indexed by id.
+    private final Map<Integer, Session> sessions;
+    // The id of the next simulation created.
+    private final AtomicInteger nextId;
+
+    /**
+     * A simulation's state as last published by its thread.
+     * @param id The simulation's id.
+     * @param step The step the simulation is at.
+     * @param counts The population of each species, indexed by species id.
+     * @param running Whether the simulation has steps to run.
+     * @param viable Whether every role still has a live organism.
+     * @param error The exception a step threw, or null if none has.
+     */
+    private record Status(int id, int step, int[] counts, boolean running, boolean viable,
+                          String error)
+    {
+        /**
+         * Return the status as JSON.
+         * @return The status.
+         */
+        String toJson()
+        {
+            StringJoiner populations = new StringJoiner(",", "{", "}");
+            for(int species = 0; species < Species.COUNT; species++) {
+                populations.add("\"" + Species.getName(species) + "\":" + counts[species]);
+            }
+            return "{\"id\":" + id + ",\"step\":" + step + ",\"running\":" + running
+                + ",\"viable\":" + viable + ",\"populations\":" + populations
+                + (error == null ? "" : ",\"error\":" + quote(error)) + "}";
+        }
+    }
+
+    /**
+     * A simulation and the thread that runs it.
+     */
+    private static class Session
+    {
+        // The simulation. Only its thread uses it.
+        private final Simulator simulator;
+        // The commands for the thread to carry out between steps.
+        private final BlockingQueue<Runnable> commands;
+        // The thread.
+        private final Thread thread;
+        // The state last published by the thread.
+        private volatile Status status;
+        // Whether the simulation has been removed.
+        private volatile boolean stopped;
+        // Whether to run until paused. Only the thread uses these.
+        private boolean running;
+        // The steps still to run.
+        private long pendingSteps;
+        // The exception a step threw, or null if none has. Only the thread
+        // sets it; once set, no more steps are run.
+        private String error;
+
+        /**
+         * Create a simulation and start its thread.
+         * @param id The simulation's id.
+         * @param simulator The simulation.
+         */
+        Session(int id, Simulator simulator)
+        {
+            this.simulator = simulator;
+            commands = new LinkedBlockingQueue<>();
+            publish(id);
+            thread = new Thread(() -> run(id), "simulation-" + id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Carry out commands, and run steps while there are any to run.
+         * @param id The simulation's id.
+         */
+        private void run(int id)
+        {
+            try {
+                while(! stopped) {
+                    boolean stepping = running || pendingSteps > 0;
+                    Runnable command = stepping ? commands.poll() : commands.take();
+                    if(command != null) {
+                        command.run();
+                    }
+                    else {
+                        try {
+                            simulator.simulateOneStep();
+                        }
+                        catch(RuntimeException e) {
+                            error = e.toString();
+                            running = false;
+                            pendingSteps = 0;
+                        }
+                        if(pendingSteps > 0) {
+                            pendingSteps--;
+                        }
+                    }
+                    publish(id);
+                    if(! status.viable() && status.running()) {
+                        running = false;
+                        pendingSteps = 0;
+                        publish(id);
+                    }
+                }
+            }
+            catch(InterruptedException e) {
+                // Removed.
+            }
+        }
+
+        /**
+         * Publish the simulation's state, if it has changed. Called on its
+         * thread.
+         * @param id The simulation's id.
+         */
+        private void publish(int id)
+        {
+            boolean stepping = running || pendingSteps > 0;
+            if(status != null && status.step() == simulator.getStep() && status.running() == stepping
+                    && status.error() == error) {
+                return;
+            }
+            int[] counts = simulator.getField().countSpecies();
+            status = new Status(id, simulator.getStep(), counts, stepping, Species.isViable(counts),
+                                error);
+        }
+
+        /**
+         * Pack the field as a snapshot. Called on the simulation's thread.
+         * @return The snapshot.
+         */
+        private byte[] snapshot()
+        {
+            Field field = simulator.getField();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + field.getDepth() * field.getWidth());
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(simulator.getStep());
+                out.writeInt(field.getDepth());
+                out.writeInt(field.getWidth());
+                byte[] cells = new byte[field.getDepth() * field.getWidth()];
+                field.packCells(cells);
+                out.write(cells);
+            }
+            catch(IOException e) {
+                // Not thrown by a ByteArrayOutputStream.
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Stop the thread.
+         */
+        void stop()
+        {
+            stopped = true;
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Serve simulations until the process is killed. The only argument,
+     * if given, is the port; 0 picks a free one.
+     * @param args The arguments.
+     * @throws IOException If the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SimulationServer server = new SimulationServer(port);
+        System.out.println("Serving simulations on http://localhost:" + server.getPort() + "/sims");
+    }
+
+    /**
+     * Start a server on the loopback interface.
+     * @param port The port, or 0 for any free one.
+     * @throws IOException If the server cannot be started.
+     */
+    public SimulationServer(int port) throws IOException
+    {
+        sessions = new ConcurrentHashMap<>();
+        nextId = new AtomicInteger();
+        handlers = newHandlerExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/sims", this::handle);
+        server.start();
+    }
+
+    /**
+     * Create the executor requests are handled on: a virtual thread per
+     * request where the runtime has them, otherwise a pool of ordinary
+     * threads. It is looked up by name so that the server compiles on
+     * Java 17.
+     * @return The executor.
+     */
+    private static ExecutorService newHandlerExecutor()
+    {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Return the port the server is listening on.
+     * @return The port.
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop the server and every simulation.
+     */
+    public void close()
+    {
+        server.stop(0);
+        for(Session session : sessions.values()) {
+            session.stop();
+        }
+        sessions.clear();
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Handle a request.
+     * @param exchange The request and its response.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try(exchange) {
+            try {
+                route(exchange);
+            }
+            catch(IllegalArgumentException e) {
+                // A malformed argument; nothing has been sent yet.
+                respond(exchange, 400, "{\"error\":" + quote(e.getMessage()) + "}");
+            }
+        }
+    }
+
+    /**
+     * Carry out a request and send its response.
+     * @param exchange The request and its response.
+     * @throws IOException If the response cannot be sent.
+     * @throws IllegalArgumentException If an argument is malformed.
+     */
+    private void route(HttpExchange exchange) throws IOException
+    {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        // path[0] is empty and path[1] is "sims".
+        if(path.length == 2) {
+            if(method.equals("POST")) {
+                create(exchange, query);
+            }
+            else if(method.equals("GET")) {
+                StringJoiner all = new StringJoiner(",", "[", "]");
+                for(Session session : sessions.values()) {
+                    all.add(session.status.toJson());
+                }
+                respond(exchange, 200, all.toString());
+            }
+            else {
+                respond(exchange, 405, "{\"error\":\"Use GET or POST.\"}");
+            }
+            return;
+        }
+        Session session = null;
+        try {
+            session = sessions.get(Integer.parseInt(path[2]));
+        }
+        catch(NumberFormatException e) {
+            // Not found.
+        }
+        if(session == null || path.length > 4) {
+            respond(exchange, 404, "{\"error\":\"No such simulation.\"}");
+            return;
+        }
+        String action = path.length == 4 ? path[3] : "";
+        switch(method + " " + action) {
+            case "GET " -> respond(exchange, 200, session.status.toJson());
+            case "DELETE " -> {
+                sessions.remove(session.status.id());
+                session.stop();
+                respond(exchange, 200, session.status.toJson());
+            }
+            case "POST step" -> {
+                long steps = parseLong(query, "n", 1);
+                if(steps < 1) {
+                    respond(exchange, 400, "{\"error\":\"n must be at least 1.\"}");
+                    return;
+                }
+                if(session.status.error() != null) {
+                    respond(exchange, 409, session.status.toJson());
+                    return;
+                }
+                Session target = session;
+                target.commands.add(() -> {
+                    if(target.error == null) {
+                        target.pendingSteps += steps;
+                    }
+                });
+                respond(exchange, 202, session.status.toJson());
+            }
+            case "POST run" -> {
+                if(session.status.error() != null) {
+                    respond(exchange, 409, session.status.toJson());
+                    return;
+                }
+                Session target = session;
+                target.commands.add(() -> target.running = target.error == null);
+                respond(exchange, 202, session.status.toJson());
+            }
+            case "POST pause" -> {
+                Session target = session;
+                target.commands.add(() -> {
+                    target.running = false;
+                    target.pendingSteps = 0;
+                });
+                respond(exchange, 202, session.status.toJson());
+            }
+            case "GET snapshot" -> snapshot(exchange, session);
+            case "GET stream" -> stream(exchange, session, parseLong(query, "n", Long.MAX_VALUE));
+            default -> respond(exchange, 404, "{\"error\":\"No such request.\"}");
+        }
+    }
+
+    /**
+     * Create a simulation.
+     * @param exchange The request and its response.
+     * @param query The arguments of the request.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void create(HttpExchange exchange, Map<String, String> query) throws IOException
+    {
+        long depth = parseLong(query, "depth", DEFAULT_DEPTH);
+        long width = parseLong(query, "width", DEFAULT_WIDTH);
+        long seed = parseLong(query, "seed", Randomizer.getRandom().nextLong());
+        if(depth < 1 || width < 1 || depth * width > MAX_CELLS) {
+            respond(exchange, 400, "{\"error\":\"The field must have between 1 and "
+                    + MAX_CELLS + " positions.\"}");
+            return;
+        }
+        int id = nextId.getAndIncrement();
+        Session session = new Session(id, new Simulator((int) depth, (int) width, seed, false));
+        sessions.put(id, session);
+        respond(exchange, 201, session.status.toJson());
+    }
+
+    /**
+     * Send a snapshot of a simulation's field, taken by its thread
+     * between steps.
+     * @param exchange The request and its response.
+     * @param session The simulation.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void snapshot(HttpExchange exchange, Session session) throws IOException
+    {
+        CompletableFuture<byte[]> snapshot = new CompletableFuture<>();
+        session.commands.add(() -> snapshot.complete(session.snapshot()));
+        byte[] body;
+        try {
+            body = snapshot.get(SNAPSHOT_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch(ExecutionException | TimeoutException e) {
+            respond(exchange, 503, "{\"error\":\"The simulation did not take a snapshot.\"}");
+            return;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Stream a simulation's status, one line each time it changes.
+     * @param exchange The request and its response.
+     * @param session The simulation.
+     * @param lines The most lines to send.
+     * @throws IOException If the client leaves.
+     */
+    private void stream(HttpExchange exchange, Session session, long lines) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        // A length of 0 sends the body in chunks as it is written.
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        Status sent = null;
+        long count = 0;
+        while(count < lines && ! session.stopped) {
+            Status status = session.status;
+            if(status != sent) {
+                out.write((status.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                sent = status;
+                count++;
+            }
+            else {
+                try {
+                    Thread.sleep(STREAM_INTERVAL);
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a JSON response.
+     * @param exchange The request and its response.
+     * @param code The HTTP status code.
+     * @param json The body.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void respond(HttpExchange exchange, int code, String json) throws IOException
+    {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Split a query string into its arguments.
+     * @param query The raw query, or null.
+     * @return The arguments, by name.
+     */
+    private static Map<String, String> parseQuery(String query)
+    {
+        Map<String, String> arguments = new HashMap<>();
+        if(query == null) {
+            return arguments;
+        }
+        for(String argument : query.split("&")) {
+            int equals = argument.indexOf('=');
+            if(equals > 0) {
+                arguments.put(URLDecoder.decode(argument.substring(0, equals), StandardCharsets.UTF_8),
+                              URLDecoder.decode(argument.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Read a number argument.
+     * @param query The arguments of the request.
+     * @param name The name of the argument.
+     * @param defaultValue The value if not given.
+     * @return The number.
+     * @throws IllegalArgumentException If the argument is not a whole
+     *                                  number; the message names it.
+     */
+    private static long parseLong(Map<String, String> query, String name, long defaultValue)
+    {
+        String value = query.get(name);
+        if(value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number.");
+        }
+    }
+
+    /**
+     * Quote text as a JSON string.
+     * @param text The text.
+     * @return The quoted text.
+     */
+    private static String quote(String text)
+    {
+        StringBuilder quoted = new StringBuilder("\"");
+        for(char c : text.toCharArray()) {
+            if(c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            }
+            else if(c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.*;
+import java.util.stream.IntStream;
+import java.util.function.Consumer;
 
 /**
  * A simple predator-prey simulator, based on a rectangular field containing 
@@ -14,22 +16,13 @@ public class Simulator
     private static final int DEFAULT_WIDTH = 120;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 80;
-    // The probability that a lion will be created in any given grid position.
-    private static final double LION_CREATION_PROBABILITY = 0.02;
-    // The probability that a cheetah will be created in any given grid position.
-    private static final double CHEETAH_CREATION_PROBABILITY = 0.04;
-    // The probability that a hyena will be created in any given grid position.
-    private static final double HYENA_CREATION_PROBABILITY = 0.05;
-    // The probability that a zebra will be created in any given position.
-    private static final double ZEBRA_CREATION_PROBABILITY = 0.14;
-    // The probability that a elephant will be created in any given grid position.
-    private static final double ELEPHANT_CREATION_PROBABILITY = 0.16;
-    // The probability that a fruit plant will be created in any given position.
-    private static final double FRUIT_CREATION_PROBABILITY = 0.20;
-    // The probability that a grass plant will be created in any given position.
-    private static final double GRASS_CREATION_PROBABILITY = 0.36;
-    // The probability that an animal will be infected by a disease.
-    private static final double DISEASE_PROBABILITY = 0.1;
+    // The number of rows populated together by one thread.
+    private static final int POPULATE_BLOCK_ROWS = 64;
+    // The number of steps a mean-field model is fitted to, unless set.
+    private static final int DEFAULT_MEAN_FIELD_WINDOW = 50;
+    // The number of random positions tried per organism placed when
+    // the field is reseeded.
+    private static final int RESEED_ATTEMPTS = 20;
     
 
     // The current state of the field.
@@ -40,9 +33,49 @@ public class Simulator
     private Timer timer;
     // The weather.
     private Weather weather;
-    // A graphical view of the simulation.
+    // The organisms that are dormant, bucketed by when they wake.
+    private final Scheduler scheduler;
+    // The disease that spreads among the animals.
+    private final Disease disease;
+    // The engine that lets the organisms act each step.
+    private StepEngine engine;
+    // The number of steps between changes of the weather.
+    private int weatherPeriod;
+    // The number of steps between updates of each species, indexed by species id.
+    private final int[] updatePeriods;
+    // The seed the simulation's draws are derived from. Every draw made
+    // while the simulator runs comes from a stream derived from it, so
+    // simulators do not share state. Each step has its own stream for
+    // each purpose (breeding, infection, movement, weather and so on),
+    // so two runs with the same seed but different parameters are
+    // partially synchronised: their draws for a purpose start in step at
+    // every step, but drift apart within the step as soon as one run
+    // makes a draw for that purpose that the other does not. Such
+    // common random numbers make the difference between the runs less
+    // noisy, though not as much as a stream per decision would.
+    private long seed;
+    // The row of the whole world that the field's first row is, when
+    // the field is one strip of a larger world.
+    private int worldRow;
+    // The creation and breeding probabilities of the run.
+    private Parameters parameters;
+    // A graphical view of the simulation, or null if it runs without one.
     private final SimulatorView view;
-    private Random rand = Randomizer.getRandom();
+    // Where each completed state is published for a viewer in another
+    // process, or null if it is not.
+    private SharedFieldPublisher publisher;
+    // Where the events of each step go, or null while nobody listens.
+    private EventRecorder events;
+    // Whether to take a snapshot of each completed state.
+    private boolean snapshotting;
+    // The snapshot of the latest completed state, or null if none is taken.
+    private volatile FieldSnapshot snapshot;
+    // Whether the field and scheduler still share organisms with another
+    // simulator since a fork.
+    private boolean forked;
+    // The model fitted to the populations of the last steps, or null if
+    // no model is kept.
+    private MeanFieldModel meanField;
 
     /**
      * Construct a simulation field with default size.
@@ -58,6 +91,33 @@ public class Simulator
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, Randomizer.getRandom().nextLong(), true);
+    }
+
+    /**
+     * Create a simulation field with the given size and seed.
+     * Simulators created without a view print nothing and do not pause
+     * between steps, so that many can run at once, e.g. in an ensemble.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed all of the simulation's draws are derived from.
+     * @param withView Whether to show the simulation in a window.
+     */
+    public Simulator(int depth, int width, long seed, boolean withView)
+    {
+        this(depth, width, seed, withView, Parameters.DEFAULT);
+    }
+
+    /**
+     * Create a simulation field with the given size, seed and parameters.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed all of the simulation's draws are derived from.
+     * @param withView Whether to show the simulation in a window.
+     * @param parameters The creation and breeding probabilities to run with.
+     */
+    public Simulator(int depth, int width, long seed, boolean withView, Parameters parameters)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be >= zero.");
@@ -66,14 +126,82 @@ public class Simulator
             width = DEFAULT_WIDTH;
         }
         
-        field = new Field(depth, width);
-        view = new SimulatorView(depth, width);
-        timer = new Timer();
-        weather = new Weather();
+        this.seed = seed;
+        this.parameters = parameters;
+        Random[] previous = Randomizer.bindStreams(Randomizer.substreams(seed, 0));
+        try {
+            field = new Field(depth, width);
+            view = withView ? new SimulatorView(depth, width) : null;
+            timer = new Timer();
+            weather = new Weather();
+            scheduler = new Scheduler();
+            disease = new Disease();
+            engine = new SerialStepEngine();
+            weatherPeriod = 1;
+            updatePeriods = new int[Species.COUNT];
+            Arrays.fill(updatePeriods, 1);
 
-        reset();
+            reset();
+        }
+        finally {
+            Randomizer.bindStreams(previous);
+        }
     }
     
+    /**
+     * Create a child of a simulator at its current state.
+     * @param parent The simulator forked.
+     * @param state The frozen state of the parent's field.
+     * @param seed The seed of the child's draws from now on.
+     */
+    private Simulator(Simulator parent, Field state, long seed)
+    {
+        field = new CowField(state);
+        step = parent.step;
+        timer = parent.timer.copy();
+        weather = parent.weather.copy();
+        scheduler = parent.scheduler.fork();
+        disease = new Disease();
+        engine = new SerialStepEngine();
+        weatherPeriod = parent.weatherPeriod;
+        updatePeriods = parent.updatePeriods.clone();
+        this.seed = seed;
+        worldRow = parent.worldRow;
+        parameters = parent.parameters;
+        view = null;
+        forked = true;
+    }
+
+    /**
+     * Branch off a child simulation from the current state, e.g. to run
+     * many futures of an interesting state. Forking does not copy the
+     * field: the parent and the child share it, and each copies a tile
+     * of it, with its organisms, only when it first uses that tile. The
+     * child has no view and steps with a serial engine.
+     * With the same seed, the child makes the same draws as the parent
+     * would, so it runs the same future; give it its own seed to branch.
+     * @param seed The seed of the child's draws from now on.
+     * @return The child.
+     */
+    public Simulator fork(long seed)
+    {
+        Field state = field instanceof CowField cow && forked ? cow.getBase() : field;
+        Simulator child = new Simulator(this, state, seed);
+        field = new CowField(state);
+        forked = true;
+        return child;
+    }
+
+    /**
+     * Branch off a child simulation with the same seed, which runs the
+     * same future as the parent until either is given a new seed.
+     * @return The child.
+     */
+    public Simulator fork()
+    {
+        return fork(seed);
+    }
+
     /**
      * Run the simulation from its current state for a reasonably long 
      * period (4000 steps).
@@ -90,107 +218,570 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        reportStats();
+        if(view != null) {
+            reportStats();
+        }
         for(int n = 1; n <= numSteps && field.isViable(); n++) {
             simulateOneStep();
-            delay(50);         // adjust this to change execution speed
+            if(view != null) {
+                delay(50);         // adjust this to change execution speed
+            }
         }
     }
     
+    /**
+     * Run the simulation for the given number of steps, skipping ahead
+     * with a mean-field model through quiet periods. The organisms are
+     * stepped one step at a time until the populations of the last
+     * steps fitted have stayed within a tolerance of their means; then
+     * the model jumps ahead and the field is reseeded (see fastForward).
+     * The model is refitted to fresh steps before every jump, so the
+     * model and the organisms are kept in agreement, and a period that
+     * stops being quiet is stepped organism by organism again.
+     * Stop before the given number of steps if it ceases to be viable.
+     * @param numSteps The number of steps to run for.
+     * @param fastSteps The most steps skipped in one jump. Must be at least one.
+     * @param tolerance How far, as a fraction of its mean, each role's
+     *                  population may stray for a period to be quiet,
+     *                  e.g. 0.05.
+     */
+    public void simulateHybrid(int numSteps, int fastSteps, double tolerance)
+    {
+        if(fastSteps < 1) {
+            System.out.println("At least one step must be skipped at a time.");
+            return;
+        }
+        if(tolerance < 0) {
+            System.out.println("The tolerance must not be negative.");
+            return;
+        }
+        if(meanField == null) {
+            setMeanFieldWindow(DEFAULT_MEAN_FIELD_WINDOW);
+        }
+        int end = step + numSteps;
+        while(step < end && field.isViable()) {
+            if(! meanField.isQuiet(tolerance) || ! fastForward(Math.min(fastSteps, end - step))) {
+                simulateOneStep();
+            }
+        }
+    }
+
+    /**
+     * Skip ahead a number of steps without stepping the organisms. The
+     * mean-field model predicts the populations that many steps ahead,
+     * and the field is reseeded to match: organisms of species that
+     * shrink are removed at random, and new organisms of species that
+     * grow are placed at random empty positions. The organisms that
+     * remain keep their state, and dormant ones sleep for as long as they
+     * had left. No events are recorded for the skipped steps, and the
+     * weather stays as it was.
+     * @param steps The number of steps to skip. Must be at least one.
+     * @return true if the simulation skipped ahead; false if no model is
+     *         kept or it has not observed enough steps to be fitted.
+     */
+    public boolean fastForward(int steps)
+    {
+        if(steps < 1) {
+            System.out.println("At least one step must be skipped.");
+            return false;
+        }
+        if(meanField == null) {
+            System.out.println("No mean-field model is kept; see setMeanFieldWindow.");
+            return false;
+        }
+        int[] predicted = meanField.predict(field.countSpecies(), steps,
+                                            field.getDepth() * field.getWidth());
+        if(predicted == null) {
+            return false;
+        }
+        step += steps;
+        for(int s = 0; s < steps; s++) {
+            timer.increment();
+        }
+        scheduler.delay(steps);
+        Random[] previous = Randomizer.bindStreams(Randomizer.substreams(seed, step));
+        try {
+            reseed(predicted);
+        }
+        finally {
+            Randomizer.bindStreams(previous);
+        }
+        // The model is fitted afresh to the reseeded field.
+        meanField.clear();
+
+        if(view != null) {
+            reportStats();
+            view.showStatus(step, field);
+        }
+        if(publisher != null) {
+            publisher.publish(step, field);
+        }
+        if(snapshotting) {
+            snapshot = new FieldSnapshot(step, field);
+        }
+        return true;
+    }
+
     /**
      * Run the simulation from its current state for a single step.
-     * Iterate over the whole field updating the state of each hyena and zebra.
+     * Organisms that would only age this step are left dormant in the
+     * scheduler and carried forward; every other organism acts.
      */
     public void simulateOneStep()
     {
+        Random[] previous = Randomizer.bindStreams(Randomizer.substreams(seed, step + 1));
+        try {
+            advance();
+        }
+        finally {
+            Randomizer.bindStreams(previous);
+        }
+    }
+
+    /**
+     * Run a single step, drawing from the step's own streams.
+     */
+    private void advance()
+    {
+        if(forked) {
+            // Dormant organisms are filed by their shared originals; use
+            // this simulator's own copies from now on.
+            scheduler.resolve(((CowField) field)::own);
+            forked = false;
+        }
         step++;
         timer.increment();
-        weather.change();
+        if (step % weatherPeriod == 0) {
+            weather.change();
+        }
+        int time = timer.getTime();
         // Use a separate Field to store the starting state of
         // the next step.
-        Field nextFieldState = new Field(field.getDepth(), field.getWidth());
-
-        // Calculates the new disease probability: higher temp, less disease.
-        double newDiseaseProb = DISEASE_PROBABILITY - ((weather.getTemp() - 20)/100);
-
-        List<Organism> organisms = field.getOrganisms();
-        for (Organism anOrganism : organisms) {
-            anOrganism.act(field, nextFieldState, timer.getTime(), weather);
+        Field nextFieldState = engine.createField(field.getDepth(), field.getWidth());
+        nextFieldState.setParameters(parameters);
+        nextFieldState.setEvents(events);
 
-            // If the organism is an animal, randomly infect it.
-            if (anOrganism instanceof Animal animal) {
-                if (! animal.isInfected() && rand.nextDouble() <= newDiseaseProb) {
-                    animal.setInfected();
+        // Decide which organisms act this step. The rest go to sleep.
+        List<Organism> acting = new ArrayList<>();
+        List<Organism> candidates = scheduler.wake(step);
+        candidates.addAll(field.getOrganisms());
+        for (Organism organism : candidates) {
+            if (organism.isAlive()) {
+                int hours = organism.getDormantHours(time);
+                // Species updated less often wait for their next update step.
+                int period = updatePeriods[organism.getSpecies()];
+                hours = Math.max(hours, (period - step % period) % period);
+                if (hours > 0) {
+                    scheduler.schedule(organism, step, hours);
+                }
+                else {
+                    acting.add(organism);
                 }
             }
         }
+        // Dormant organisms keep their places before anybody moves.
+        scheduler.carryForward(nextFieldState);
+
+        engine.step(acting, field, nextFieldState, time, weather);
+        // Spread the disease over the new state as a whole.
+        disease.apply(nextFieldState, weather.getTemp());
+        nextFieldState.setEvents(null);
+        if(events != null) {
+            events.publish(step);
+        }
         
         // Replace the old state with the new one.
         field = nextFieldState;
+        if(meanField != null) {
+            meanField.observe(field.countSpecies());
+        }
 
-        reportStats();
-        view.showStatus(step, field);
+        if(view != null) {
+            reportStats();
+            view.showStatus(step, field);
+        }
+        if(publisher != null) {
+            publisher.publish(step, field);
+        }
+        if(snapshotting) {
+            snapshot = new FieldSnapshot(step, field);
+        }
+    }
+
+    /**
+     * Return the current state of the field.
+     * @return The field.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * Return the number of steps run since the last reset.
+     * @return The current step.
+     */
+    public int getStep()
+    {
+        return step;
     }
         
+    /**
+     * Set the engine that lets the organisms act each step, e.g. a
+     * ParallelStepEngine for large fields. The default is serial.
+     * @param engine The step engine to use.
+     */
+    public void setStepEngine(StepEngine engine)
+    {
+        this.engine = engine;
+    }
+
+    /**
+     * Publish each completed state of the field for a viewer in another
+     * process, e.g. a SharedFieldViewer, starting with the current one.
+     * @param publisher Where to publish, or null to stop publishing.
+     *                  It must have the size of the field.
+     */
+    public void setPublisher(SharedFieldPublisher publisher)
+    {
+        this.publisher = publisher;
+        if(publisher != null) {
+            publisher.publish(step, field);
+        }
+    }
+
+    /**
+     * Take an immutable snapshot of each completed state of the field,
+     * starting with the current one, for other threads to query while the
+     * simulation runs on.
+     * @param snapshotting Whether to take snapshots.
+     */
+    public void setSnapshotting(boolean snapshotting)
+    {
+        this.snapshotting = snapshotting;
+        snapshot = snapshotting ? new FieldSnapshot(step, field) : null;
+    }
+
+    /**
+     * Return the snapshot of the latest completed state. Any thread may
+     * call this at any time.
+     * @return The snapshot, or null if snapshots are not being taken.
+     */
+    public FieldSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * Listen to the events of a type from the next step on: births,
+     * deaths, meals and infections. The listener gets a batch of events
+     * after each step in which some happened.
+     * @param type The type of event, one of those defined in EventBatch.
+     * @param listener The listener.
+     */
+    public void addEventListener(int type, Consumer<EventBatch> listener)
+    {
+        if(events == null) {
+            events = new EventRecorder();
+        }
+        events.addListener(type, listener);
+        if(! events.hasListeners()) {
+            events = null;
+        }
+    }
+
+    /**
+     * Stop listening to the events of a type. Once nobody listens,
+     * the steps record no events at all.
+     * @param type The type of event it was registered for.
+     * @param listener The listener.
+     */
+    public void removeEventListener(int type, Consumer<EventBatch> listener)
+    {
+        if(events != null) {
+            events.removeListener(type, listener);
+            if(! events.hasListeners()) {
+                events = null;
+            }
+        }
+    }
+
+    /**
+     * Keep a mean-field model of the populations, fitted to a number of
+     * the most recent steps, for fastForward and simulateHybrid to skip
+     * ahead with. The model starts with no steps observed.
+     * @param window The number of steps fitted; at least two, or zero to
+     *               keep no model.
+     */
+    public void setMeanFieldWindow(int window)
+    {
+        meanField = window == 0 ? null : new MeanFieldModel(window);
+    }
+
+    /**
+     * Return the mean-field model of the populations.
+     * @return The model, or null if no model is kept.
+     */
+    public MeanFieldModel getMeanFieldModel()
+    {
+        return meanField;
+    }
+
+    /**
+     * Set how often the weather changes. The default is every step.
+     * @param period The number of steps between weather changes. Must be at least one.
+     */
+    public void setWeatherPeriod(int period)
+    {
+        if(period < 1) {
+            System.out.println("The weather period must be at least one step.");
+            return;
+        }
+        weatherPeriod = period;
+    }
+
+    /**
+     * Set how often a plant species is updated. The default is every
+     * step. Between updates its plants are carried forward untouched;
+     * at an update they catch up on the skipped hours in one go, with
+     * one breeding chance per hour they were old enough to breed.
+     * Animals are always updated every step.
+     * @param species The species id of a plant species.
+     * @param period The number of steps between updates. Must be at least one.
+     */
+    public void setUpdatePeriod(int species, int period)
+    {
+        if(! Species.isPlant(species)) {
+            System.out.println("Only plant species can be updated less often.");
+            return;
+        }
+        if(period < 1) {
+            System.out.println("The update period must be at least one step.");
+            return;
+        }
+        updatePeriods[species] = period;
+    }
+
+    /**
+     * Set the creation and breeding probabilities. Breeding uses them
+     * from the next step on; creation from the next reset.
+     * @param parameters The parameters to run with.
+     */
+    public void setParameters(Parameters parameters)
+    {
+        this.parameters = parameters;
+        field.setParameters(parameters);
+    }
+
+    /**
+     * Set the seed the simulation's draws are derived from. The same
+     * seed gives the same starting population, whatever the number of
+     * threads. It takes effect at the next reset.
+     * @param seed The seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the row of the whole world that the field's first row is, for
+     * a simulator running one strip of a larger world. Each row is
+     * populated from its row of the world, so the strips of a world
+     * start out just as the whole world would. It takes effect at the
+     * next reset.
+     * @param worldRow The row of the world. Must be at least zero.
+     */
+    public void setWorldRow(int worldRow)
+    {
+        if(worldRow < 0) {
+            System.out.println("The world row must be at least zero.");
+            return;
+        }
+        this.worldRow = worldRow;
+    }
+
     /**
      * Reset the simulation to a starting position.
      */
     public void reset()
     {
-        step = 0;
-        populate();
-        view.showStatus(step, field);
-        timer.reset();
-        
+        Random[] previous = Randomizer.bindStreams(Randomizer.substreams(seed, 0));
+        try {
+            step = 0;
+            scheduler.clear();
+            if(forked) {
+                field = new Field(field.getDepth(), field.getWidth());
+                forked = false;
+            }
+            else {
+                // Forget the last run's organisms and the log of them.
+                field.clear();
+            }
+            field.setParameters(parameters);
+            populate();
+            if(meanField != null) {
+                meanField.clear();
+            }
+            if(view != null) {
+                view.showStatus(step, field);
+            }
+            if(publisher != null) {
+                publisher.publish(step, field);
+            }
+            if(snapshotting) {
+                snapshot = new FieldSnapshot(step, field);
+            }
+            timer.reset();
+        }
+        finally {
+            Randomizer.bindStreams(previous);
+        }
     }
     /**
      * Randomly populate the field with all species.
+     * The field is populated in blocks of rows, in parallel. Each row
+     * draws from its own populate stream, derived from the seed and the
+     * row's place in the world, and each block fills its rows of the
+     * field in one go.
      */
     private void populate()
     {
-        field.clear();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                double roll = rand.nextDouble();
-                if(roll <= LION_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Lion lion = new Lion(true, location);
-                    field.placeOrganism(lion, location);
-                }
-                else if(roll <= CHEETAH_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Cheetah cheetah = new Cheetah(true, location);
-                    field.placeOrganism(cheetah, location);
-                }
-                else if(roll <= HYENA_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Hyena hyena = new Hyena(true, location);
-                    field.placeOrganism(hyena, location);
-                }
-                else if(roll <= ZEBRA_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Zebra zebra = new Zebra(true, location);
-                    field.placeOrganism(zebra, location);
-                }
-                else if(roll <= ELEPHANT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Elephant elephant = new Elephant(true, location);
-                    field.placeOrganism(elephant, location);
+        // The chance of each species in a position, as cumulative limits
+        // on a single roll, in the order the species are tried.
+        int[] order = { Species.LION, Species.CHEETAH, Species.HYENA, Species.ZEBRA,
+                        Species.ELEPHANT, Species.FRUIT, Species.GRASS };
+        double[] limits = new double[Species.COUNT];
+        double total = 0;
+        for(int species : order) {
+            total += parameters.getCreationProbability(species);
+            limits[species] = total;
+        }
+        int blocks = (field.getDepth() + POPULATE_BLOCK_ROWS - 1) / POPULATE_BLOCK_ROWS;
+        IntStream.range(0, blocks).parallel().forEach(block -> populateBlock(block, limits));
+    }
+
+    /**
+     * Randomly populate one block of rows.
+     * @param block The index of the block.
+     * @param limits The cumulative creation limit of each species,
+     *               indexed by species id.
+     */
+    private void populateBlock(int block, double[] limits)
+    {
+        int firstRow = block * POPULATE_BLOCK_ROWS;
+        int rows = Math.min(POPULATE_BLOCK_ROWS, field.getDepth() - firstRow);
+        int width = field.getWidth();
+        Organism[] cells = new Organism[rows * width];
+        Random previous = Randomizer.bind(null);
+        try {
+            for(int row = firstRow; row < firstRow + rows; row++) {
+                Random rowRand = Randomizer.substream(seed, Randomizer.POPULATE, worldRow + row);
+                // The organisms' own draws (age, sex) come from the row's stream too.
+                Randomizer.bind(rowRand);
+                for(int col = 0; col < width; col++) {
+                    double roll = rowRand.nextDouble();
+                    Organism organism = null;
+                    if(roll <= limits[Species.GRASS]) {
+                        Location location = new Location(row, col);
+                        if(roll <= limits[Species.LION]) {
+                            organism = new Lion(true, location);
+                        }
+                        else if(roll <= limits[Species.CHEETAH]) {
+                            organism = new Cheetah(true, location);
+                        }
+                        else if(roll <= limits[Species.HYENA]) {
+                            organism = new Hyena(true, location);
+                        }
+                        else if(roll <= limits[Species.ZEBRA]) {
+                            organism = new Zebra(true, location);
+                        }
+                        else if(roll <= limits[Species.ELEPHANT]) {
+                            organism = new Elephant(true, location);
+                        }
+                        else if (roll <= limits[Species.FRUIT]) {
+                            organism = new Fruit(true, location);
+                        }
+                        else {
+                            organism = new Grass(true, location);
+                        }
+                    }
+                    cells[(row - firstRow) * width + col] = organism;
                 }
-                else if (roll <= FRUIT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Fruit fruit = new Fruit(true,location);
-                    field.placeOrganism(fruit, location);
+            }
+        }
+        finally {
+            Randomizer.bind(previous);
+        }
+        field.fillRows(firstRow, cells);
+    }
+
+    /**
+     * Change the field to hold the given population of each species.
+     * Organisms of species with too many are removed at random; new
+     * organisms of species with too few are placed at random empty
+     * positions, as far as they can be found.
+     * @param targets The population of each species, indexed by species id.
+     */
+    private void reseed(int[] targets)
+    {
+        Random rand = Randomizer.getRandom(Randomizer.POPULATE);
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        List<List<Organism>> living = new ArrayList<>();
+        for(int species = 0; species < Species.COUNT; species++) {
+            living.add(new ArrayList<>());
+        }
+        for(int row = 0; row < depth; row++) {
+            for(int col = field.nextOccupiedCol(row, 0); col < width; col = field.nextOccupiedCol(row, col + 1)) {
+                Organism organism = field.getOrganismAt(row, col);
+                if(organism != null && organism.isAlive()) {
+                    living.get(organism.getSpecies()).add(organism);
                 }
-                else if (roll <= GRASS_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Grass grass = new Grass(true,location);
-                    field.placeOrganism(grass,location);
+            }
+        }
+        // Make room before placing anybody.
+        for(int species = 0; species < Species.COUNT; species++) {
+            List<Organism> members = living.get(species);
+            for(int removed = 0; removed < members.size() - targets[species]; removed++) {
+                // A random member among those not yet removed.
+                int chosen = removed + rand.nextInt(members.size() - removed);
+                Collections.swap(members, removed, chosen);
+                members.get(removed).setDead();
+            }
+        }
+        for(int species = 0; species < Species.COUNT; species++) {
+            int missing = targets[species] - living.get(species).size();
+            for(int attempts = missing * RESEED_ATTEMPTS; missing > 0 && attempts > 0; attempts--) {
+                Location location = new Location(rand.nextInt(depth), rand.nextInt(width));
+                Organism there = field.getOrganismAt(location);
+                if(there == null || ! there.isAlive()) {
+                    field.placeOrganism(create(species, location), location);
+                    missing--;
                 }
             }
         }
     }
 
+    /**
+     * Create a new organism of a species, of a random age.
+     * @param species The species id.
+     * @param location Where the organism is.
+     * @return The organism.
+     */
+    private static Organism create(int species, Location location)
+    {
+        return switch(species) {
+            case Species.LION -> new Lion(true, location);
+            case Species.CHEETAH -> new Cheetah(true, location);
+            case Species.HYENA -> new Hyena(true, location);
+            case Species.ZEBRA -> new Zebra(true, location);
+            case Species.ELEPHANT -> new Elephant(true, location);
+            case Species.FRUIT -> new Fruit(true, location);
+            default -> new Grass(true, location);
+        };
+    }
+
     /**
      * Report on the number of each type of organism in the field.
      */
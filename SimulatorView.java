@@ -1,6 +1,4 @@
 import java.awt.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import javax.swing.*;
 
 /**
@@ -27,10 +25,13 @@ public class SimulatorView extends JFrame
     private final JLabel population;
     private final FieldView fieldView;
     
-    // A map for storing colors for participants in the simulation
-    private final Map<Class<?>, Color> colors;
+    // The colors for participants in the simulation, indexed by species id
+    private final Color[] colors;
     // A statistics object computing and storing simulation information
     private final FieldStats stats;
+    // Whether each region of the field (see Field.REGION_SIZE) was left
+    // blank when last shown; null until the field is first shown.
+    private boolean[] blank;
 
     /**
      * Create a view of the given width and height.
@@ -40,14 +41,14 @@ public class SimulatorView extends JFrame
     public SimulatorView(int height, int width)
     {
         stats = new FieldStats();
-        colors = new LinkedHashMap<>();
-        setColor(Lion.class, Color.yellow);
-        setColor(Cheetah.class, Color.orange);
-        setColor(Hyena.class, Color.red);
-        setColor(Zebra.class, Color.blue);
-        setColor(Elephant.class, Color.gray);
-        setColor(Grass.class,Color.green);
-        setColor(Fruit.class, Color.magenta);
+        colors = new Color[Species.COUNT];
+        setColor(Species.LION, Color.yellow);
+        setColor(Species.CHEETAH, Color.orange);
+        setColor(Species.HYENA, Color.red);
+        setColor(Species.ZEBRA, Color.blue);
+        setColor(Species.ELEPHANT, Color.gray);
+        setColor(Species.GRASS,Color.green);
+        setColor(Species.FRUIT, Color.magenta);
 
         setTitle("Savannah Simulation");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
@@ -66,23 +67,23 @@ public class SimulatorView extends JFrame
     }
     
     /**
-     * Define a color to be used for a given class of organism.
-     * @param organismClass The organism's Class object.
-     * @param color The color to be used for the given class.
+     * Define a color to be used for a given species of organism.
+     * @param species The organism's species id.
+     * @param color The color to be used for the given species.
      */
-    public void setColor(Class<?> organismClass, Color color)
+    public void setColor(int species, Color color)
     {
-        colors.put(organismClass, color);
+        colors[species] = color;
     }
 
     /**
-     * @return The color to be used for a given class of organism.
+     * @return The color to be used for a given species of organism.
      */
-    private Color getColor(Class<?> organismClass)
+    private Color getColor(int species)
     {
-        Color col = colors.get(organismClass);
+        Color col = colors[species];
         if(col == null) {
-            // no color defined for this class
+            // no color defined for this species
             return UNKNOWN_COLOR;
         }
         else {
@@ -104,17 +105,44 @@ public class SimulatorView extends JFrame
         stepLabel.setText(STEP_PREFIX + step);
         stats.reset();
         
-        fieldView.preparePaint();
+        if(fieldView.preparePaint() || blank == null) {
+            blank = new boolean[regionsOf(field.getDepth()) * regionsOf(field.getWidth())];
+        }
 
+        // Regions without organisms are only painted over if they were
+        // not already left blank, so a mostly empty field is cheap to show.
+        int width = field.getWidth();
+        int regionsAcross = regionsOf(width);
+        boolean[] blankNow = new boolean[regionsAcross];
         for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object organism = field.getOrganismAt(new Location(row, col));
-                if(organism != null) {
-                    stats.incrementCount(organism.getClass());
-                    fieldView.drawMark(col, row, getColor(organism.getClass()));
+            int col = 0;
+            while(col < width) {
+                int next = field.nextOccupiedCol(row, col);
+                for(; col < next; col++) {
+                    int region = row / Field.REGION_SIZE * regionsAcross + col / Field.REGION_SIZE;
+                    blankNow[col / Field.REGION_SIZE] = true;
+                    if(! blank[region]) {
+                        fieldView.drawMark(col, row, EMPTY_COLOR);
+                    }
                 }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
+                int end = Math.min((col / Field.REGION_SIZE + 1) * Field.REGION_SIZE, width);
+                for(; col < end; col++) {
+                    Organism organism = field.getOrganismAt(new Location(row, col));
+                    if(organism != null) {
+                        stats.incrementCount(organism.getSpecies());
+                        fieldView.drawMark(col, row, getColor(organism.getSpecies()));
+                    }
+                    else {
+                        fieldView.drawMark(col, row, EMPTY_COLOR);
+                    }
+                }
+            }
+            if(row % Field.REGION_SIZE == Field.REGION_SIZE - 1 || row == field.getDepth() - 1) {
+                // The band of regions is done.
+                int first = row / Field.REGION_SIZE * regionsAcross;
+                for(int r = 0; r < regionsAcross; r++) {
+                    blank[first + r] = blankNow[r];
+                    blankNow[r] = false;
                 }
             }
         }
@@ -124,6 +152,16 @@ public class SimulatorView extends JFrame
         fieldView.repaint();
     }
 
+    /**
+     * Return the number of regions needed to cover a length.
+     * @param length The depth or width of the field.
+     * @return The number of regions.
+     */
+    private static int regionsOf(int length)
+    {
+        return (length + Field.REGION_SIZE - 1) / Field.REGION_SIZE;
+    }
+
     /**
      * Determine whether the simulation should continue to run.
      * @return true If there is more than one species alive.
@@ -173,8 +211,10 @@ public class SimulatorView extends JFrame
         /**
          * Prepare for a new round of painting. Since the component
          * may be resized, compute the scaling factor again.
+         * @return true if the image was made anew, so nothing on it
+         *         can be kept.
          */
-        public void preparePaint()
+        public boolean preparePaint()
         {
             if(! size.equals(getSize())) {  // if the size has changed...
                 size = getSize();
@@ -189,7 +229,9 @@ public class SimulatorView extends JFrame
                 if(yScale < 1) {
                     yScale = GRID_VIEW_SCALING_FACTOR;
                 }
+                return true;
             }
+            return false;
         }
         
         /**
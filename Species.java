@@ -0,0 +1,124 @@
+/**
+ * Species identifiers and the diet table of the simulation.
+ * Every organism carries a small integer species id. What a species
+ * eats, and how much stamina it gains from it, is looked up in a
+ * precomputed predator x prey table rather than decided by a chain
+ * of instanceof checks.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class Species
+{
+    // The species ids. They are used as array indices, so they must
+    // stay dense and start at zero.
+    public static final int LION = 0;
+    public static final int CHEETAH = 1;
+    public static final int HYENA = 2;
+    public static final int ZEBRA = 3;
+    public static final int ELEPHANT = 4;
+    public static final int GRASS = 5;
+    public static final int FRUIT = 6;
+    // The number of species.
+    public static final int COUNT = 7;
+
+    // The role a species plays in the food chain.
+    public static final int PREDATOR = 0;
+    public static final int PREY = 1;
+    public static final int PLANT = 2;
+    // The number of roles.
+    public static final int ROLE_COUNT = 3;
+
+    // The name of each species, indexed by species id.
+    private static final String[] NAMES = {
+        "Lion", "Cheetah", "Hyena", "Zebra", "Elephant", "Grass", "Fruit"
+    };
+    // The role of each species, indexed by species id.
+    private static final int[] ROLES = {
+        PREDATOR, PREDATOR, PREDATOR, PREY, PREY, PLANT, PLANT
+    };
+    // The stamina gained by the eater (row) when eating the eaten (column).
+    // Zero means the eaten species is not part of the eater's diet.
+    private static final int[][] DIET = new int[COUNT][COUNT];
+
+    static {
+        DIET[LION][HYENA] = Hyena.getNutrition();
+        DIET[LION][ZEBRA] = Zebra.getNutrition();
+        DIET[LION][ELEPHANT] = Elephant.getNutrition();
+        DIET[CHEETAH][HYENA] = Hyena.getNutrition();
+        DIET[CHEETAH][ZEBRA] = Zebra.getNutrition();
+        DIET[HYENA][ZEBRA] = Zebra.getNutrition();
+        DIET[ZEBRA][GRASS] = Grass.NUTRITION;
+        DIET[ZEBRA][FRUIT] = Fruit.NUTRITION;
+        DIET[ELEPHANT][GRASS] = Grass.NUTRITION;
+        DIET[ELEPHANT][FRUIT] = Fruit.NUTRITION;
+    }
+
+    /**
+     * Species only provides static lookups.
+     */
+    private Species()
+    {
+    }
+
+    /**
+     * Return the stamina an organism of one species gains by eating
+     * an organism of another.
+     * @param eater The species id of the eater.
+     * @param eaten The species id of the organism being eaten.
+     * @return The stamina gained, or zero if the eater does not eat that species.
+     */
+    public static int getNutrition(int eater, int eaten)
+    {
+        return DIET[eater][eaten];
+    }
+
+    /**
+     * Return the name of a species.
+     * @param species The species id.
+     * @return The name of the species, e.g. "Lion".
+     */
+    public static String getName(int species)
+    {
+        return NAMES[species];
+    }
+
+    /**
+     * Return the role a species plays in the food chain.
+     * @param species The species id.
+     * @return One of PREDATOR, PREY or PLANT.
+     */
+    public static int getRole(int species)
+    {
+        return ROLES[species];
+    }
+
+    /**
+     * Check whether a species is a plant.
+     * @param species The species id.
+     * @return true if the species is a plant.
+     */
+    public static boolean isPlant(int species)
+    {
+        return ROLES[species] == PLANT;
+    }
+
+    /**
+     * Check whether populations make a viable field: at least one
+     * predator, one prey, and one plant.
+     * @param counts The population of each species, indexed by species id.
+     * @return true if every role has a live organism.
+     */
+    public static boolean isViable(int[] counts)
+    {
+        boolean[] found = new boolean[ROLE_COUNT];
+        int rolesFound = 0;
+        for(int species = 0; species < COUNT; species++) {
+            if(counts[species] > 0 && ! found[ROLES[species]]) {
+                found[ROLES[species]] = true;
+                rolesFound++;
+            }
+        }
+        return rolesFound == ROLE_COUNT;
+    }
+}
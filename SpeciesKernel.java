@@ -0,0 +1,25 @@
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark an animal class whose act is to be generated as a specialised
+ * kernel by SpeciesKernelProcessor. The class must declare the
+ * constants the kernel is built from: BREEDING_AGE, MAX_AGE,
+ * MAX_LITTER_SIZE, MATE_RANGE, ACTIVE_RANGE, SLEEP_TIME_START,
+ * SLEEP_TIME_END, and ACTIVE_TIME_START and ACTIVE_TIME_END, either as
+ * ints or as int arrays of several periods.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface SpeciesKernel
+{
+    /**
+     * @return The species id of the class, one of those defined in Species.
+     */
+    int value();
+}
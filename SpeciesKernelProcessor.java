@@ -0,0 +1,766 @@
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.Trees;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+
+/**
+ * Generate SpeciesKernels, the StepKernel with one specialised act per
+ * animal class marked with SpeciesKernel.
+ *
+ * Each kernel does what the class's own act does, in the same order
+ * and with the same random draws, so a KernelStepEngine gives exactly
+ * the results of a SerialStepEngine. But the kernel is built at compile
+ * time from the class's constants and the diet table in Species: the
+ * ages, ranges, litter sizes and sleeping and active hours are inlined,
+ * the diet lookup becomes a switch over the prey with the nutrition
+ * values inlined, neighbourhoods of a range known at compile time are
+ * scanned by straight-line code with one bounds check per offset, and
+ * cells are held as indices, with a Location made only for a cell
+ * that is moved to, born into or eaten from.
+ *
+ * The processor is not found on its own. Compile it first, then run
+ * it over the sources:
+ *
+ *   javac -d out SpeciesKernel.java SpeciesKernelProcessor.java
+ *   javac -cp out -processorpath out -processor SpeciesKernelProcessor -d out *.java
+ *
+ * (adding --release 21 --enable-preview for main.java). KernelBenchmark
+ * then compares the kernels with the species' own act methods.
+ * A build without the processor still compiles; KernelStepEngine then
+ * falls back to the species' own act methods.
+ *
+ * The kernels still make virtual calls through Field (getCell, eat,
+ * tryPlace, recordEvent) and Organism (isAlive, getSpecies, getSex):
+ * the cells of a field hold organisms of any species, and the
+ * field's storage is its own.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+@SupportedAnnotationTypes("SpeciesKernel")
+public class SpeciesKernelProcessor extends AbstractProcessor
+{
+    // The name of the generated class.
+    static final String GENERATED = "SpeciesKernels";
+    // The largest range whose neighbourhood scan is written out in full.
+    private static final int MAX_UNROLLED_RANGE = 4;
+    // The constants every kernel is built from.
+    private static final String[] CONSTANTS = {
+        "BREEDING_AGE", "MAX_AGE", "MAX_LITTER_SIZE", "MATE_RANGE", "ACTIVE_RANGE",
+        "SLEEP_TIME_START", "SLEEP_TIME_END", "ACTIVE_TIME_START", "ACTIVE_TIME_END"
+    };
+
+    // Whether the kernels have been generated in an earlier round.
+    private boolean generated;
+    // Whether an error has been reported.
+    private boolean failed;
+
+    /**
+     * The kernel of one animal class.
+     */
+    private static class Kernel
+    {
+        // The class.
+        final TypeElement type;
+        // The species id of the class.
+        final int species;
+        // The values of CONSTANTS, in the same order; each an array of
+        // one value, or of one value per period.
+        final int[][] values;
+
+        /**
+         * Create the kernel of a class.
+         */
+        Kernel(TypeElement type, int species)
+        {
+            this.type = type;
+            this.species = species;
+            this.values = new int[CONSTANTS.length][];
+        }
+
+        /**
+         * @param name One of CONSTANTS.
+         * @return The first value of the constant.
+         */
+        int get(String name)
+        {
+            return values(name)[0];
+        }
+
+        /**
+         * @param name One of CONSTANTS.
+         * @return Every value of the constant.
+         */
+        int[] values(String name)
+        {
+            for(int c = 0; c < CONSTANTS.length; c++) {
+                if(CONSTANTS[c].equals(name)) {
+                    return values[c];
+                }
+            }
+            throw new IllegalArgumentException(name);
+        }
+
+        /**
+         * @return The class's simple name.
+         */
+        String name()
+        {
+            return type.getSimpleName().toString();
+        }
+    }
+
+    /**
+     * Generate for the latest source version, like the rest of the build.
+     * @return The latest supported source version.
+     */
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Generate SpeciesKernels from the marked classes, once.
+     * @param annotations The annotations of this round.
+     * @param round The round.
+     * @return true, as the annotation is only meant for this processor.
+     */
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round)
+    {
+        if(generated || annotations.isEmpty()) {
+            return true;
+        }
+        generated = true;
+        Trees trees = Trees.instance(processingEnv);
+        TypeElement speciesType = processingEnv.getElementUtils().getTypeElement("Species");
+        if(speciesType == null) {
+            error(null, "SpeciesKernelProcessor needs Species among the sources.");
+            return true;
+        }
+
+        List<Kernel> kernels = new ArrayList<>();
+        for(Element element : round.getElementsAnnotatedWith(SpeciesKernel.class)) {
+            TypeElement type = (TypeElement) element;
+            Kernel kernel = new Kernel(type, type.getAnnotation(SpeciesKernel.class).value());
+            for(int c = 0; c < CONSTANTS.length; c++) {
+                kernel.values[c] = readConstant(trees, type, CONSTANTS[c]);
+            }
+            kernels.add(kernel);
+        }
+        kernels.sort(Comparator.comparingInt(kernel -> kernel.species));
+        int count = readInt(speciesType, "COUNT");
+        int[][] diet = readDiet(trees, speciesType, count);
+        if(failed) {
+            return true;
+        }
+
+        try(Writer out = processingEnv.getFiler()
+                .createSourceFile(GENERATED, kernels.stream().map(k -> k.type).toArray(Element[]::new))
+                .openWriter()) {
+            out.write(generate(kernels, diet));
+        }
+        catch(IOException e) {
+            error(null, "Cannot write " + GENERATED + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Write the source of SpeciesKernels.
+     * @param kernels The kernels, in order of species id.
+     * @param diet The diet table of Species.
+     * @return The source.
+     */
+    private String generate(List<Kernel> kernels, int[][] diet)
+    {
+        StringBuilder names = new StringBuilder();
+        for(int k = 0; k < kernels.size(); k++) {
+            names.append(k == 0 ? "" : k == kernels.size() - 1 ? " and " : ", ");
+            names.append(kernels.get(k).name());
+        }
+        // The ranges scanned by straight-line code: adjacency and the
+        // active range of each species.
+        Set<Integer> ranges = new TreeSet<>();
+        ranges.add(1);
+        for(Kernel kernel : kernels) {
+            if(kernel.get("ACTIVE_RANGE") <= MAX_UNROLLED_RANGE) {
+                ranges.add(kernel.get("ACTIVE_RANGE"));
+            }
+        }
+
+        Source s = new Source();
+        s.line("import java.util.Random;");
+        s.line("");
+        s.line("/**");
+        s.line(" * Specialised step kernels for " + names + ", generated by");
+        s.line(" * SpeciesKernelProcessor from their constants and the diet table of");
+        s.line(" * Species. Do not edit: change the species and compile again.");
+        s.line(" */");
+        s.line("public class " + GENERATED + " implements StepKernel");
+        s.open("");
+        s.line("// The stream the species draw from.");
+        s.line("private static final Random BREED = Randomizer.getRandom(Randomizer.BREED);");
+        s.line("// The stream the field shuffles neighbourhoods with.");
+        s.line("private static final Random MOVEMENT = Randomizer.getRandom(Randomizer.MOVEMENT);");
+        s.line("");
+        s.line("/**");
+        s.line(" * Let an organism act through its species' kernel.");
+        s.line(" * @param organism The organism to act.");
+        s.line(" * @param currentField The current state of the field.");
+        s.line(" * @param nextFieldState The new state being built.");
+        s.line(" * @param time The current time in the simulation.");
+        s.line(" * @param weather The current state of the weather.");
+        s.line(" * @return true if it acted, false if its species has no kernel.");
+        s.line(" */");
+        s.line("public boolean act(Organism organism, Field currentField, Field nextFieldState,");
+        s.line("                   int time, Weather weather)");
+        s.open("");
+        s.open("switch(organism.getSpecies()) ");
+        for(Kernel kernel : kernels) {
+            s.line("case " + kernel.species + ":");
+            s.line("    act" + kernel.name() + "((" + kernel.name()
+                   + ") organism, currentField, nextFieldState, time, weather);");
+            s.line("    return true;");
+        }
+        s.line("default:");
+        s.line("    return false;");
+        s.close();
+        s.close();
+        for(Kernel kernel : kernels) {
+            generateAct(s, kernel);
+            generateFindFood(s, kernel, diet[kernel.species]);
+            generateCanMate(s, kernel);
+        }
+        for(int range : ranges) {
+            generateNeighbourhood(s, range);
+        }
+        generateNeighbourhood(s);
+        generateShuffle(s);
+        s.close();
+        return s.toString();
+    }
+
+    /**
+     * Write the act of one species.
+     * @param s Where to write.
+     * @param k The kernel.
+     */
+    private void generateAct(Source s, Kernel k)
+    {
+        String type = k.name();
+        int activeRange = k.get("ACTIVE_RANGE");
+        s.line("");
+        s.line("/**");
+        s.line(" * Act as " + type + ".act does.");
+        s.line(" */");
+        s.line("private static void act" + type + "(" + type + " animal, Field currentField,");
+        s.line("        Field nextFieldState, int time, Weather weather)");
+        s.open("");
+        s.line("animal.age++;");
+        s.open("if(animal.age > " + k.get("MAX_AGE") + ") ");
+        s.line("nextFieldState.recordEvent(EventBatch.OLD_AGE, animal);");
+        s.line("animal.setDead();");
+        s.close();
+        s.line("animal.stamina--;");
+        s.open("if(animal.stamina <= 0) ");
+        s.line("nextFieldState.recordEvent(EventBatch.STARVATION, animal);");
+        s.line("animal.setDead();");
+        s.close();
+        s.open("if(! animal.isLiving()) ");
+        s.line("return;");
+        s.close();
+        s.open("if(" + within("time", k.values("SLEEP_TIME_START"), k.values("SLEEP_TIME_END")) + ") ");
+        s.line("animal.stayInPlace(nextFieldState);");
+        s.line("return;");
+        s.close();
+        s.line("Location here = animal.getLocation();");
+        s.line("int depth = nextFieldState.getDepth();");
+        s.line("int width = nextFieldState.getWidth();");
+        s.line("// The free adjacent positions, as getFreeAdjacentLocations gives them.");
+        s.line("int[] free = new int[8];");
+        s.line("int adjacent = neighbourhood1(here.row(), here.col(), depth, width, free);");
+        s.line("int freeCount = 0;");
+        s.open("for(int i = 0; i < adjacent; i++) ");
+        s.line("Organism organism = nextFieldState.getCell(free[i]);");
+        s.open("if(organism == null || ! organism.isAlive()) ");
+        s.line("free[freeCount++] = free[i];");
+        s.close();
+        s.close();
+        s.line("int nextFree = 0;");
+        s.open("if(freeCount > 0) ");
+        s.line("int births = 0;");
+        s.open("if(animal.age >= " + k.get("BREEDING_AGE") + " && BREED.nextDouble() <= "
+               + "currentField.getParameters().getBreedingProbability(" + k.species + ")) ");
+        s.line("births = BREED.nextInt(" + k.get("MAX_LITTER_SIZE") + ") + 1;");
+        s.close();
+        s.open("if(births > 0 && canMate" + type + "(animal, currentField, "
+               + "Math.max(1, " + k.get("MATE_RANGE") + " + weather.getVisibility()))) ");
+        s.open("for(int b = 0; b < births && nextFree < freeCount; b++) ");
+        s.line("Location loc = new Location(free[nextFree] / width, free[nextFree] % width);");
+        s.line("nextFree++;");
+        s.line(type + " young = new " + type + "(false, loc);");
+        s.open("if(nextFieldState.tryPlace(young, loc)) ");
+        s.line("nextFieldState.recordEvent(EventBatch.BIRTH, young);");
+        s.close();
+        s.close();
+        s.close();
+        s.close();
+        s.line("Location nextLocation;");
+        s.open("if(" + within("time", k.values("ACTIVE_TIME_START"), k.values("ACTIVE_TIME_END")) + ") ");
+        s.line("int[] cells = new int[" + cells(activeRange) + "];");
+        if(activeRange <= MAX_UNROLLED_RANGE) {
+            s.line("int count = neighbourhood" + activeRange
+                   + "(here.row(), here.col(), depth, width, cells);");
+        }
+        else {
+            s.line("int count = neighbourhood(here.row(), here.col(), " + activeRange
+                   + ", depth, width, cells);");
+        }
+        s.line("nextLocation = findFood" + type + "(animal, currentField, nextFieldState, cells, count);");
+        s.close();
+        s.open("else ");
+        s.line("int[] cells = new int[8];");
+        s.line("int count = neighbourhood1(here.row(), here.col(), depth, width, cells);");
+        s.line("nextLocation = findFood" + type + "(animal, currentField, nextFieldState, cells, count);");
+        s.close();
+        s.open("if(nextLocation == null && nextFree < freeCount) ");
+        s.line("nextLocation = new Location(free[nextFree] / width, free[nextFree] % width);");
+        s.close();
+        s.open("if(nextLocation != null && nextFieldState.tryPlace(animal, nextLocation)) ");
+        s.line("animal.setLocation(nextLocation);");
+        s.close();
+        s.open("else ");
+        s.line("nextFieldState.recordEvent(EventBatch.OVERCROWDING, animal);");
+        s.line("animal.setDead();");
+        s.close();
+        s.close();
+    }
+
+    /**
+     * Write the search for food of one species, with its diet inlined.
+     * @param s Where to write.
+     * @param k The kernel.
+     * @param diet The nutrition the species gains from each species.
+     */
+    private void generateFindFood(Source s, Kernel k, int[] diet)
+    {
+        String type = k.name();
+        s.line("");
+        s.line("/**");
+        s.line(" * Eat the first live organism of " + type + "'s diet among the given cells.");
+        s.line(" */");
+        s.line("private static Location findFood" + type + "(" + type + " animal, Field field,");
+        s.line("        Field nextFieldState, int[] cells, int count)");
+        s.open("");
+        s.line("int width = field.getWidth();");
+        s.open("for(int i = 0; i < count; i++) ");
+        s.line("Organism organism = field.getCell(cells[i]);");
+        s.open("if(organism != null && organism.isAlive()) ");
+        s.line("int nutrition;");
+        s.open("switch(organism.getSpecies()) ");
+        for(int prey = 0; prey < diet.length; prey++) {
+            if(diet[prey] > 0) {
+                s.line("case " + prey + ":");
+                s.line("    nutrition = " + diet[prey] + ";");
+                s.line("    break;");
+            }
+        }
+        s.line("default:");
+        s.line("    nutrition = 0;");
+        s.close();
+        s.open("if(nutrition > 0) ");
+        s.line("Location loc = new Location(cells[i] / width, cells[i] % width);");
+        s.line("nextFieldState.recordEvent(EventBatch.PREDATION, organism, " + k.species + ");");
+        s.line("nextFieldState.eat(animal, organism, loc, nutrition);");
+        s.line("return loc;");
+        s.close();
+        s.close();
+        s.close();
+        s.line("return null;");
+        s.close();
+    }
+
+    /**
+     * Write the search for a mate of one species.
+     * @param s Where to write.
+     * @param k The kernel.
+     */
+    private void generateCanMate(Source s, Kernel k)
+    {
+        String type = k.name();
+        s.line("");
+        s.line("/**");
+        s.line(" * Return whether a " + type + " of the other sex is within the given range.");
+        s.line(" */");
+        s.line("private static boolean canMate" + type + "(" + type + " animal, Field field, int range)");
+        s.open("");
+        s.line("Location here = animal.getLocation();");
+        s.line("int side = 2 * range + 1;");
+        s.line("int[] cells = new int[side * side - 1];");
+        s.line("int count = neighbourhood(here.row(), here.col(), range, field.getDepth(), field.getWidth(), cells);");
+        s.line("char sex = animal.getSex();");
+        s.open("for(int i = 0; i < count; i++) ");
+        s.line("Organism organism = field.getCell(cells[i]);");
+        s.open("if(organism != null && organism.getSpecies() == " + k.species
+               + " && organism.getSex() != sex) ");
+        s.line("return true;");
+        s.close();
+        s.close();
+        s.line("return false;");
+        s.close();
+    }
+
+    /**
+     * Write the scan of a neighbourhood of a fixed range: one bounds
+     * check per offset, in the order of Field's offsets, then the
+     * shuffle getLocationsInRange does.
+     * @param s Where to write.
+     * @param range The range.
+     */
+    private void generateNeighbourhood(Source s, int range)
+    {
+        s.line("");
+        s.line("/**");
+        s.line(" * Collect the cells within range " + range
+               + " of a position, shuffled as getLocationsInRange shuffles them.");
+        s.line(" */");
+        s.line("private static int neighbourhood" + range
+               + "(int row, int col, int depth, int width, int[] cells)");
+        s.open("");
+        s.line("int count = 0;");
+        s.line("int index = row * width + col;");
+        for(int dr = -range; dr <= range; dr++) {
+            for(int dc = -range; dc <= range; dc++) {
+                if(dr == 0 && dc == 0) {
+                    continue;
+                }
+                List<String> checks = new ArrayList<>();
+                if(dr < 0) {
+                    checks.add("row >= " + -dr);
+                }
+                else if(dr > 0) {
+                    checks.add("row < depth - " + dr);
+                }
+                if(dc < 0) {
+                    checks.add("col >= " + -dc);
+                }
+                else if(dc > 0) {
+                    checks.add("col < width - " + dc);
+                }
+                String offset = (dr == 0 ? "" : (dr < 0 ? " - " : " + ") + (dr == 1 || dr == -1 ? "" : Math.abs(dr) + " * ") + "width")
+                                + (dc == 0 ? "" : (dc < 0 ? " - " : " + ") + Math.abs(dc));
+                s.open("if(" + String.join(" && ", checks) + ") ");
+                s.line("cells[count++] = index" + offset + ";");
+                s.close();
+            }
+        }
+        s.line("shuffle(cells, count);");
+        s.line("return count;");
+        s.close();
+    }
+
+    /**
+     * Write the scan of a neighbourhood of a range only known when
+     * the kernel runs.
+     * @param s Where to write.
+     */
+    private void generateNeighbourhood(Source s)
+    {
+        s.line("");
+        s.line("/**");
+        s.line(" * Collect the cells within the given range of a position, shuffled");
+        s.line(" * as getLocationsInRange shuffles them.");
+        s.line(" */");
+        s.line("private static int neighbourhood(int row, int col, int range, int depth, int width, int[] cells)");
+        s.open("");
+        s.line("int count = 0;");
+        s.open("for(int r = Math.max(0, row - range); r <= Math.min(depth - 1, row + range); r++) ");
+        s.open("for(int c = Math.max(0, col - range); c <= Math.min(width - 1, col + range); c++) ");
+        s.open("if(r != row || c != col) ");
+        s.line("cells[count++] = r * width + c;");
+        s.close();
+        s.close();
+        s.close();
+        s.line("shuffle(cells, count);");
+        s.line("return count;");
+        s.close();
+    }
+
+    /**
+     * Write the shuffle Collections.shuffle does, with the same draws.
+     * @param s Where to write.
+     */
+    private void generateShuffle(Source s)
+    {
+        s.line("");
+        s.line("/**");
+        s.line(" * Shuffle the first count cells, drawing as Collections.shuffle does.");
+        s.line(" */");
+        s.line("private static void shuffle(int[] cells, int count)");
+        s.open("");
+        s.open("for(int i = count; i > 1; i--) ");
+        s.line("int j = MOVEMENT.nextInt(i);");
+        s.line("int swapped = cells[i - 1];");
+        s.line("cells[i - 1] = cells[j];");
+        s.line("cells[j] = swapped;");
+        s.close();
+        s.close();
+    }
+
+    /**
+     * Return a condition for a time lying in any of the given periods,
+     * each running from a start hour to an end hour, maybe over midnight.
+     * @param time The expression of the time.
+     * @param starts The start of each period.
+     * @param ends The end of each period.
+     * @return The condition.
+     */
+    private String within(String time, int[] starts, int[] ends)
+    {
+        List<String> periods = new ArrayList<>();
+        for(int p = 0; p < starts.length; p++) {
+            if(starts[p] < ends[p]) {
+                periods.add("(" + time + " >= " + starts[p] + " && " + time + " <= " + ends[p] + ")");
+            }
+            else {
+                periods.add("(" + time + " >= " + starts[p] + " || " + time + " <= " + ends[p] + ")");
+            }
+        }
+        return String.join(" || ", periods);
+    }
+
+    /**
+     * @param range A range.
+     * @return The number of cells within the range of a position.
+     */
+    private static int cells(int range)
+    {
+        int side = 2 * range + 1;
+        return side * side - 1;
+    }
+
+    /**
+     * Read an int constant, or an int array initialised with literals.
+     * @param trees The trees of the sources.
+     * @param type The class declaring the constant.
+     * @param name The name of the constant.
+     * @return Its values, or null if it cannot be read.
+     */
+    private int[] readConstant(Trees trees, TypeElement type, String name)
+    {
+        for(Element member : type.getEnclosedElements()) {
+            if(member.getKind() == ElementKind.FIELD && member.getSimpleName().contentEquals(name)) {
+                VariableElement field = (VariableElement) member;
+                if(field.getConstantValue() instanceof Integer value) {
+                    return new int[] { value };
+                }
+                Tree tree = trees.getTree(field);
+                if(tree instanceof VariableTree variable
+                        && variable.getInitializer() instanceof NewArrayTree array
+                        && array.getInitializers() != null) {
+                    int[] values = new int[array.getInitializers().size()];
+                    for(int i = 0; i < values.length; i++) {
+                        if(array.getInitializers().get(i) instanceof LiteralTree literal
+                                && literal.getValue() instanceof Integer value) {
+                            values[i] = value;
+                        }
+                        else {
+                            error(field, name + " must be initialised with int literals.");
+                            return null;
+                        }
+                    }
+                    return values;
+                }
+                error(field, name + " must be an int constant or an int array.");
+                return null;
+            }
+        }
+        error(type, type.getSimpleName() + " must declare " + name + ".");
+        return null;
+    }
+
+    /**
+     * Read an int constant of a class.
+     * @param type The class.
+     * @param name The name of the constant.
+     * @return Its value, or zero if it cannot be read.
+     */
+    private int readInt(TypeElement type, String name)
+    {
+        for(Element member : type.getEnclosedElements()) {
+            if(member.getKind() == ElementKind.FIELD && member.getSimpleName().contentEquals(name)
+                    && ((VariableElement) member).getConstantValue() instanceof Integer value) {
+                return value;
+            }
+        }
+        error(type, type.getSimpleName() + " must declare the int constant " + name + ".");
+        return 0;
+    }
+
+    /**
+     * Read the diet table from the static initialiser of Species, whose
+     * statements are all of the form DIET[EATER][EATEN] = X.getNutrition()
+     * or DIET[EATER][EATEN] = X.NUTRITION.
+     * @param trees The trees of the sources.
+     * @param species The Species class.
+     * @param count The number of species.
+     * @return The nutrition gained by each species (row) from each (column).
+     */
+    private int[][] readDiet(Trees trees, TypeElement species, int count)
+    {
+        int[][] diet = new int[count][count];
+        ClassTree tree = trees.getTree(species);
+        for(Tree member : tree.getMembers()) {
+            if(member instanceof BlockTree block && block.isStatic()) {
+                for(StatementTree statement : block.getStatements()) {
+                    readDietEntry(species, statement, diet);
+                }
+            }
+        }
+        return diet;
+    }
+
+    /**
+     * Read one entry of the diet table into the given table.
+     * @param species The Species class.
+     * @param statement The statement setting the entry.
+     * @param diet The table.
+     */
+    private void readDietEntry(TypeElement species, StatementTree statement, int[][] diet)
+    {
+        if(statement instanceof ExpressionStatementTree expression
+                && expression.getExpression() instanceof AssignmentTree assignment
+                && assignment.getVariable() instanceof ArrayAccessTree outer
+                && outer.getExpression() instanceof ArrayAccessTree inner
+                && inner.getIndex() instanceof IdentifierTree eater
+                && outer.getIndex() instanceof IdentifierTree eaten) {
+            TypeElement food = nutritionSource(assignment.getExpression());
+            if(food != null) {
+                int row = readInt(species, eater.getName().toString());
+                int col = readInt(species, eaten.getName().toString());
+                diet[row][col] = readInt(food, "NUTRITION");
+                return;
+            }
+        }
+        error(species, "Cannot read the diet entry: " + statement);
+    }
+
+    /**
+     * Return the class whose NUTRITION a diet entry takes.
+     * @param value The value assigned to the entry.
+     * @return The class, or null if the value is of another form.
+     */
+    private TypeElement nutritionSource(ExpressionTree value)
+    {
+        ExpressionTree select = value;
+        if(value instanceof MethodInvocationTree call && call.getArguments().isEmpty()) {
+            select = call.getMethodSelect();
+            if(! (select instanceof MemberSelectTree method)
+                    || ! method.getIdentifier().contentEquals("getNutrition")) {
+                return null;
+            }
+        }
+        else if(! (value instanceof MemberSelectTree field)
+                || ! field.getIdentifier().contentEquals("NUTRITION")) {
+            return null;
+        }
+        if(((MemberSelectTree) select).getExpression() instanceof IdentifierTree owner) {
+            return processingEnv.getElementUtils().getTypeElement(owner.getName());
+        }
+        return null;
+    }
+
+    /**
+     * Report an error, failing the compilation.
+     * @param element The element it is about, or null.
+     * @param message The message.
+     */
+    private void error(Element element, String message)
+    {
+        failed = true;
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * Java source being written, one indented line at a time.
+     */
+    private static class Source
+    {
+        // The source so far.
+        private final StringBuilder text = new StringBuilder();
+        // The current depth of indentation.
+        private int depth;
+
+        /**
+         * Write a line at the current indentation.
+         * @param line The line, or "" for an empty one.
+         */
+        void line(String line)
+        {
+            if(! line.isEmpty()) {
+                text.append("    ".repeat(depth)).append(line);
+            }
+            text.append('\n');
+        }
+
+        /**
+         * Write a header followed by an opening brace, on the same line
+         * for statements and on its own line for a declaration's body.
+         * @param header The statement header, or "" to open a declaration's body.
+         */
+        void open(String header)
+        {
+            if(header.isEmpty()) {
+                line("{");
+            }
+            else {
+                line(header + "{");
+            }
+            depth++;
+        }
+
+        /**
+         * Close the innermost brace.
+         */
+        void close()
+        {
+            depth--;
+            line("}");
+        }
+
+        /**
+         * @return The source written.
+         */
+        public String toString()
+        {
+            return text.toString();
+        }
+    }
+}
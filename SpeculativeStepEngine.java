@@ -0,0 +1,496 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A step engine that runs organisms speculatively in parallel and still
+ * gives exactly the result of running them one after another.
+ *
+ * The acting organisms are taken in windows. Every organism of a
+ * window acts at once, on its own copy, against views of the two
+ * fields that record what it reads (each position it looks at, with
+ * the organism it saw there and whether that was alive) and hold back
+ * what it writes. The window is then committed in order. An organism's
+ * writes are applied only if everything it read is still what it would
+ * see at its place in the serial order; otherwise it is aborted and run
+ * again against the committed state, which is then exact.
+ *
+ * Each organism's act draws from its own random stream, derived from
+ * the seed, the step and its place in the order, so a re-run makes the
+ * same draws. The result is the same as that of a SerialStepEngine
+ * created with the same seed.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class SpeculativeStepEngine implements StepEngine
+{
+    // The default number of organisms speculated on at once.
+    private static final int DEFAULT_WINDOW = 512;
+    // The number of organisms below which a speculation task is not split.
+    private static final int CHUNK_SIZE = 32;
+
+    // The pool speculation runs on.
+    private final ForkJoinPool pool;
+    // The number of organisms speculated on at once.
+    private final int window;
+    // The generator of each step's seed.
+    private final Random seeds;
+    // The number of speculative runs so far.
+    private long runs;
+    // The number of those runs that were aborted.
+    private long aborts;
+
+    /**
+     * Create a speculative step engine on the common pool.
+     * @param seed The seed the organisms' random streams are derived from.
+     */
+    public SpeculativeStepEngine(long seed)
+    {
+        this(ForkJoinPool.commonPool(), DEFAULT_WINDOW, seed);
+    }
+
+    /**
+     * Create a speculative step engine.
+     * @param pool The pool to speculate on.
+     * @param window The number of organisms speculated on at once. Must be at least one.
+     * @param seed The seed the organisms' random streams are derived from.
+     */
+    public SpeculativeStepEngine(ForkJoinPool pool, int window, long seed)
+    {
+        if(window < 1) {
+            System.out.println("The window must hold at least one organism.");
+            System.out.println("Using the default window.");
+            window = DEFAULT_WINDOW;
+        }
+        this.pool = pool;
+        this.window = window;
+        this.seeds = new Random(seed);
+    }
+
+    /**
+     * Let the given organisms act for one step, speculatively.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                     int time, Weather weather)
+    {
+        long stepSeed = seeds.nextLong();
+        // The copy that acted in place of each organism already committed.
+        Map<Organism, Organism> committed = new IdentityHashMap<>();
+        Context context = new Context(acting, currentField, nextFieldState,
+                                      time, weather, stepSeed, committed);
+        Run[] pending = new Run[Math.min(window, acting.size())];
+
+        for(int from = 0; from < acting.size(); from += window) {
+            int to = Math.min(from + window, acting.size());
+            pool.invoke(new SpeculateTask(context, pending, from, from, to));
+            for(int i = from; i < to; i++) {
+                Run run = pending[i - from];
+                runs++;
+                if(! run.isValid()) {
+                    aborts++;
+                    run = context.run(i);
+                }
+                run.commit();
+                pending[i - from] = null;
+            }
+        }
+    }
+
+    /**
+     * Return the number of speculative runs made so far.
+     * @return The number of runs.
+     */
+    public long getRuns()
+    {
+        return runs;
+    }
+
+    /**
+     * Return the number of speculative runs aborted so far.
+     * @return The number of aborts.
+     */
+    public long getAborts()
+    {
+        return aborts;
+    }
+
+    /**
+     * Return the fraction of speculative runs aborted so far.
+     * @return The abort rate, between 0 and 1.
+     */
+    public double getAbortRate()
+    {
+        return runs == 0 ? 0.0 : (double) aborts / runs;
+    }
+
+    /**
+     * Everything a run needs to know about the step.
+     */
+    private static class Context
+    {
+        private final List<Organism> acting;
+        private final Field currentField, nextFieldState;
+        private final int time;
+        private final Weather weather;
+        private final long stepSeed;
+        private final Map<Organism, Organism> committed;
+
+        /**
+         * Collect the state of the step.
+         */
+        Context(List<Organism> acting, Field currentField, Field nextFieldState,
+                int time, Weather weather, long stepSeed, Map<Organism, Organism> committed)
+        {
+            this.acting = acting;
+            this.currentField = currentField;
+            this.nextFieldState = nextFieldState;
+            this.time = time;
+            this.weather = weather;
+            this.stepSeed = stepSeed;
+            this.committed = committed;
+        }
+
+        /**
+         * Let the i-th acting organism act on a copy of itself, against
+         * the state committed so far.
+         * @param i The organism's place in the order.
+         * @return The run, ready to be validated and committed.
+         */
+        Run run(int i)
+        {
+            Organism original = acting.get(i);
+            Run run = new Run(this, original);
+            Random previous = Randomizer.bind(Randomizer.stream(stepSeed, i));
+            run.copy.act(run.current, run.next, time, weather);
+            Randomizer.bind(previous);
+            return run;
+        }
+
+        /**
+         * Return the organism that stands for the given one now: its
+         * committed copy if it has acted this step, otherwise itself.
+         * @param organism An organism of the current field, or null.
+         * @return The organism as it stands, or null.
+         */
+        Organism resolve(Organism organism)
+        {
+            Organism copy = organism == null ? null : committed.get(organism);
+            return copy != null ? copy : organism;
+        }
+    }
+
+    /**
+     * One organism's speculative act: what it read and what it wrote.
+     */
+    private static class Run
+    {
+        private final Context context;
+        private final Organism original;
+        private final Organism copy;
+        // Whether the original was alive when it was copied.
+        private final boolean wasAlive;
+        private final View current, next;
+        // The organisms eaten, in order.
+        private final List<Organism> eaten;
+
+        /**
+         * Prepare a run of the given organism.
+         */
+        Run(Context context, Organism original)
+        {
+            this.context = context;
+            this.original = original;
+            this.copy = original.copy();
+            this.wasAlive = original.isAlive();
+            this.current = new View(this, context.currentField, false);
+            this.next = new View(this, context.nextFieldState, true);
+            this.eaten = new ArrayList<>();
+        }
+
+        /**
+         * Check that the run saw what it would see at its place in the
+         * serial order, given everything committed before it.
+         * @return true if the run can be committed.
+         */
+        boolean isValid()
+        {
+            return original.isAlive() == wasAlive && current.isValid() && next.isValid();
+        }
+
+        /**
+         * Apply the run's writes to the real fields and organisms.
+         */
+        void commit()
+        {
+            // The prey die first, so the eaters' moves onto them are not
+            // taken for overcrowding.
+            for(Organism prey : eaten) {
+                prey.setDead();
+            }
+            next.applyWrites(context.nextFieldState);
+            next.applyEvents(context.nextFieldState);
+            context.committed.put(original, copy);
+        }
+    }
+
+    /**
+     * A view of a field for one run. Reads go through to the field and
+     * are recorded; writes are held back in the view, and seen only by
+     * the run itself.
+     */
+    private static class View extends Field
+    {
+        private final Run run;
+        private final Field base;
+        // Whether this is a view of the new state rather than the current one.
+        private final boolean isNext;
+        // The positions read, the organisms seen there and whether they were alive.
+        private final List<Integer> readIndices;
+        private final List<Organism> readOrganisms;
+        private final List<Boolean> readAlive;
+        // The positions written and the organisms placed there, in order.
+        private final List<Integer> writeIndices;
+        private final List<Organism> writeOrganisms;
+        // The events recorded, each as type, species, row, column, other.
+        private final List<int[]> events;
+
+        /**
+         * Create a view of a field.
+         */
+        View(Run run, Field base, boolean isNext)
+        {
+            super(base);
+            this.run = run;
+            this.base = base;
+            this.isNext = isNext;
+            setParameters(base.getParameters());
+            readIndices = new ArrayList<>();
+            readOrganisms = new ArrayList<>();
+            readAlive = new ArrayList<>();
+            writeIndices = new ArrayList<>();
+            writeOrganisms = new ArrayList<>();
+            events = new ArrayList<>();
+            // Events are only held back if anybody listens.
+            setEvents(base.getEvents());
+        }
+
+        /**
+         * Return the organism at the given index, as the run sees it.
+         * @param index The position's row * width + col.
+         * @return The organism there, or null if there is none.
+         */
+        protected Organism getCell(int index)
+        {
+            for(int w = writeIndices.size() - 1; w >= 0; w--) {
+                if(writeIndices.get(w) == index) {
+                    return writeOrganisms.get(w);
+                }
+            }
+            Organism organism = look(index);
+            readIndices.add(index);
+            readOrganisms.add(organism);
+            readAlive.add(organism != null && organism.isAlive());
+            return organism;
+        }
+
+        /**
+         * The organisms the run writes are never carried.
+         * @param index The position's row * width + col.
+         * @return false.
+         */
+        protected boolean isCarried(int index)
+        {
+            return false;
+        }
+
+        /**
+         * Hold back a write.
+         * @param index The position's row * width + col.
+         * @param organism The organism to store.
+         * @param carriedForward Ignored; runs only place organisms.
+         */
+        protected void storeCell(int index, Organism organism, boolean carriedForward)
+        {
+            writeIndices.add(index);
+            writeOrganisms.add(organism);
+        }
+
+        /**
+         * The view keeps no occupancy of its own; its writes are marked
+         * in the field when the run is committed.
+         * @param row The row of the position.
+         * @param col The column of the position.
+         */
+        protected void markOccupied(int row, int col)
+        {
+        }
+
+        /**
+         * Return whether a region of the field viewed may hold organisms.
+         * @param region The region's index, in row-major order of the regions.
+         * @return true if the region may hold organisms.
+         */
+        protected boolean isRegionOccupied(int region)
+        {
+            return base.isRegionOccupied(region);
+        }
+
+        /**
+         * The view keeps no record of the organisms stored; the field
+         * records them when the run is committed.
+         * @param organism The organism stored.
+         */
+        protected void recordStored(Organism organism)
+        {
+        }
+
+        /**
+         * Let the run's organism eat. It gains the nutrition at once,
+         * but the prey only dies when the run is committed.
+         * @param eater The animal that eats.
+         * @param prey The organism eaten.
+         * @param location Where the prey is in the current state of the field.
+         * @param nutrition The nutrition the eater gains.
+         */
+        public void eat(Animal eater, Organism prey, Location location, int nutrition)
+        {
+            eater.feed(nutrition);
+            run.eaten.add(prey);
+        }
+
+        /**
+         * Place an organism unless a live organism holds the location.
+         * The prey the run has eaten only die when it is committed, but
+         * the run sees them as dead already, as it would in order.
+         * @param organism The organism to be placed.
+         * @param location Where to place the organism.
+         * @return true if the organism was placed.
+         */
+        public boolean tryPlace(Organism organism, Location location)
+        {
+            Organism occupant = getOrganismAt(location);
+            if(occupant == null || ! occupant.isAlive() || run.eaten.contains(occupant)) {
+                placeOrganism(organism, location);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Check that every position read still holds what the run saw.
+         * @return true if nothing the run read has changed.
+         */
+        boolean isValid()
+        {
+            for(int r = 0; r < readIndices.size(); r++) {
+                Organism organism = look(readIndices.get(r));
+                if(organism != readOrganisms.get(r)
+                        || (organism != null && organism.isAlive()) != readAlive.get(r)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Hold back an event until the run is committed.
+         * @param type The type of event.
+         * @param species The species of the organism it happened to.
+         * @param row The row where it happened.
+         * @param col The column where it happened.
+         * @param other The type-specific value.
+         */
+        public void recordEvent(int type, int species, int row, int col, int other)
+        {
+            events.add(new int[] { type, species, row, col, other });
+        }
+
+        /**
+         * Record the held back events in a field.
+         * @param field The field to record them in.
+         */
+        void applyEvents(Field field)
+        {
+            for(int[] event : events) {
+                field.recordEvent(event[0], event[1], event[2], event[3], event[4]);
+            }
+        }
+
+        /**
+         * Apply the held back writes to a field.
+         * @param field The field to write to.
+         */
+        void applyWrites(Field field)
+        {
+            int width = getWidth();
+            for(int w = 0; w < writeIndices.size(); w++) {
+                int index = writeIndices.get(w);
+                field.placeOrganism(writeOrganisms.get(w), new Location(index / width, index % width));
+            }
+        }
+
+        /**
+         * Return what the underlying field holds at the given index. In
+         * the current field, organisms that have acted are seen as their
+         * committed copies.
+         * @param index The position's row * width + col.
+         * @return The organism there, or null if there is none.
+         */
+        private Organism look(int index)
+        {
+            Organism organism = base.getCell(index);
+            return isNext ? organism : run.context.resolve(organism);
+        }
+    }
+
+    /**
+     * Speculate on a range of a window, splitting the range in half
+     * until it is small enough.
+     */
+    private static class SpeculateTask extends RecursiveAction
+    {
+        private final Context context;
+        private final Run[] runs;
+        private final int windowStart, from, to;
+
+        /**
+         * Create a task for the organisms in [from, to) of the window
+         * starting at windowStart.
+         */
+        SpeculateTask(Context context, Run[] runs, int windowStart, int from, int to)
+        {
+            this.context = context;
+            this.runs = runs;
+            this.windowStart = windowStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Run the organisms, forking halves while the range is large.
+         */
+        protected void compute()
+        {
+            if(to - from <= CHUNK_SIZE) {
+                for(int i = from; i < to; i++) {
+                    runs[i - windowStart] = context.run(i);
+                }
+            }
+            else {
+                int middle = (from + to) / 2;
+                invokeAll(new SpeculateTask(context, runs, windowStart, from, middle),
+                          new SpeculateTask(context, runs, windowStart, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.List;
+
+/**
+ * A strategy for letting the organisms of a field act for one step.
+ * The simulator decides which organisms act; the engine decides in
+ * what order, and on how many threads, they do so.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public interface StepEngine
+{
+    /**
+     * Let the given organisms act for one step.
+     * @param acting The organisms that act this step.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     */
+    void step(List<Organism> acting, Field currentField, Field nextFieldState,
+              int time, Weather weather);
+
+    /**
+     * Create an empty field for the next state to be built in.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @return A field suited to the way this engine writes to it.
+     */
+    default Field createField(int depth, int width)
+    {
+        return new Field(depth, width);
+    }
+}
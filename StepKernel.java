@@ -0,0 +1,39 @@
+/**
+ * Acts for organisms without going through their own act methods.
+ * SpeciesKernelProcessor generates the implementation, SpeciesKernels,
+ * with one specialised kernel per species marked with SpeciesKernel.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public interface StepKernel
+{
+    /**
+     * Let an organism act through its species' kernel, exactly as its
+     * own act method would.
+     * @param organism The organism to act.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @param time The current time in the simulation.
+     * @param weather The current state of the weather.
+     * @return true if it acted, false if its species has no kernel.
+     */
+    boolean act(Organism organism, Field currentField, Field nextFieldState,
+                int time, Weather weather);
+
+    /**
+     * Load the kernels generated by SpeciesKernelProcessor.
+     * @return The kernels, or null if the build has none.
+     */
+    static StepKernel load()
+    {
+        try {
+            return (StepKernel) Class.forName("SpeciesKernels")
+                .getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            System.out.println("No species kernels in this build; organisms act on their own.");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * Choose a tile size and worker count for a parallel step engine from
+ * measured step times.
+ * The tuner tries every combination of the given tile sizes and worker
+ * counts for a few steps each, measuring the time per acting organism,
+ * and settles on the cheapest. While settled it keeps a running average
+ * of the cost, and explores again when that drifts well away from what
+ * was measured, or after a fixed number of steps, since the best choice
+ * changes as the populations grow and crash.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class StepTuner
+{
+    // The number of steps each choice runs for before it is measured,
+    // to let pools start and code warm up.
+    private static final int WARMUP_STEPS = 1;
+    // The number of steps each choice is measured for.
+    private static final int SAMPLE_STEPS = 3;
+    // How far the settled cost may drift, as a ratio either way, before
+    // the tuner explores again.
+    private static final double DRIFT = 1.5;
+    // The number of settled steps after which the tuner explores again anyway.
+    private static final int RETUNE_INTERVAL = 500;
+    // The weight of each new step in the running average of the cost.
+    private static final double SMOOTHING = 0.2;
+
+    // The tile size and worker count of each choice.
+    private final int[] tileSizes;
+    private final int[] workers;
+    // The measured cost of each choice, in nanoseconds per organism.
+    private final double[] costs;
+
+    // The choice in use.
+    private int current;
+    // Whether the tuner is trying the choices in turn.
+    private boolean exploring;
+    // The number of steps run with the current choice while exploring.
+    private int stepsTaken;
+    // The total cost measured for the current choice while exploring.
+    private double sum;
+    // The running average of the cost while settled.
+    private double average;
+    // The number of steps since the tuner settled.
+    private int settledSteps;
+
+    /**
+     * Create a tuner over every combination of the given values.
+     * @param tileSizeChoices The tile sizes to try.
+     * @param workerChoices The worker counts to try.
+     */
+    public StepTuner(int[] tileSizeChoices, int[] workerChoices)
+    {
+        tileSizeChoices = Arrays.stream(tileSizeChoices).distinct().toArray();
+        workerChoices = Arrays.stream(workerChoices).distinct().toArray();
+        int count = tileSizeChoices.length * workerChoices.length;
+        tileSizes = new int[count];
+        workers = new int[count];
+        costs = new double[count];
+        int i = 0;
+        for(int tileSize : tileSizeChoices) {
+            for(int workerCount : workerChoices) {
+                tileSizes[i] = tileSize;
+                workers[i] = workerCount;
+                i++;
+            }
+        }
+        startExploring();
+    }
+
+    /**
+     * Return the tile size to use for the next step.
+     * @return The tile size.
+     */
+    public int getTileSize()
+    {
+        return tileSizes[current];
+    }
+
+    /**
+     * Return the worker count to use for the next step.
+     * @return The worker count.
+     */
+    public int getWorkers()
+    {
+        return workers[current];
+    }
+
+    /**
+     * Record how long a step took with the current choice.
+     * @param nanos The time the step took, in nanoseconds.
+     * @param organisms The number of organisms that acted.
+     */
+    public void record(long nanos, int organisms)
+    {
+        double cost = (double) nanos / Math.max(1, organisms);
+        if(exploring) {
+            stepsTaken++;
+            if(stepsTaken > WARMUP_STEPS) {
+                sum += cost;
+            }
+            if(stepsTaken == WARMUP_STEPS + SAMPLE_STEPS) {
+                costs[current] = sum / SAMPLE_STEPS;
+                stepsTaken = 0;
+                sum = 0;
+                current++;
+                if(current == costs.length) {
+                    settle();
+                }
+            }
+        }
+        else {
+            average = SMOOTHING * cost + (1 - SMOOTHING) * average;
+            settledSteps++;
+            double ratio = average / costs[current];
+            if(ratio > DRIFT || ratio < 1 / DRIFT || settledSteps >= RETUNE_INTERVAL) {
+                startExploring();
+            }
+        }
+    }
+
+    /**
+     * Start trying the choices in turn.
+     */
+    private void startExploring()
+    {
+        exploring = true;
+        current = 0;
+        stepsTaken = 0;
+        sum = 0;
+    }
+
+    /**
+     * Settle on the cheapest choice measured.
+     */
+    private void settle()
+    {
+        int best = 0;
+        for(int i = 1; i < costs.length; i++) {
+            if(costs[i] < costs[best]) {
+                best = i;
+            }
+        }
+        current = best;
+        exploring = false;
+        average = costs[best];
+        settledSteps = 0;
+    }
+}
@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a world too large for one process as strips of rows, each in its
+ * own worker process (see StripWorker). The coordinator starts the
+ * workers, has them connect to each other over loopback sockets, and
+ * then steps them in lockstep: every worker runs a step before any
+ * worker starts the next. After each step it adds up the populations
+ * the workers report.
+ *
+ * Every worker starts from the same seed, so the weather and time of
+ * day agree everywhere, and the world starts out just as it would in a
+ * single Simulator of the same seed.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class StripCoordinator implements AutoCloseable
+{
+    // How long to wait for the workers to start and connect, in milliseconds.
+    private static final long START_TIMEOUT = 60000;
+
+    // The size of the world.
+    private final int depth, width;
+    // The number of strips, and so of workers.
+    private final int strips;
+    // The seed of the world.
+    private final long seed;
+    // The worker processes, in strip order.
+    private final List<Process> workers;
+    // The connection to each worker, in strip order.
+    private final SocketChannel[] channels;
+    // The number of steps run.
+    private int step;
+    // The population of each species in the whole world, indexed by species id.
+    private int[] counts;
+
+    /**
+     * Create a coordinator. The workers are started by start.
+     * Every strip must be at least as deep as the halos, so a world
+     * that is too shallow for the given number of strips gets fewer.
+     * @param depth Depth of the world.
+     * @param width Width of the world.
+     * @param strips The number of strips.
+     * @param seed The seed of the world.
+     */
+    public StripCoordinator(int depth, int width, int strips, long seed)
+    {
+        if(strips < 1 || depth / strips < StripWorker.HALO_ROWS) {
+            System.out.println("Each strip must be at least " + StripWorker.HALO_ROWS +
+                               " rows deep.");
+            strips = Math.max(1, Math.min(strips, depth / StripWorker.HALO_ROWS));
+        }
+        this.depth = depth;
+        this.width = width;
+        this.strips = strips;
+        this.seed = seed;
+        workers = new ArrayList<>();
+        channels = new SocketChannel[strips];
+        counts = new int[Species.COUNT];
+    }
+
+    /**
+     * Start the workers, connect them to each other, and collect the
+     * starting populations.
+     * @throws IOException If a worker cannot be started or connected.
+     */
+    public void start() throws IOException
+    {
+        try(ServerSocketChannel server = Loopback.listen()) {
+            int port = Loopback.portOf(server);
+            for(int index = 0; index < strips; index++) {
+                List<String> args = new ArrayList<>();
+                for(long arg : new long[] { port, index, strips, depth, width, seed }) {
+                    args.add(Long.toString(arg));
+                }
+                workers.add(Loopback.launch("StripWorker", List.of(), args));
+            }
+
+            // Each worker says which strip it runs and where it listens
+            // for the worker above it.
+            server.configureBlocking(false);
+            int[] listenPorts = new int[strips];
+            long deadline = System.currentTimeMillis() + START_TIMEOUT;
+            for(int connected = 0; connected < strips; ) {
+                SocketChannel channel = server.accept();
+                if(channel == null) {
+                    checkStarting(deadline);
+                    sleep(10);
+                    continue;
+                }
+                Loopback.prepare(channel);
+                ByteBuffer hello = Loopback.receive(channel);
+                int index = hello.getInt();
+                channels[index] = channel;
+                listenPorts[index] = hello.getInt();
+                connected++;
+            }
+            // Tell each worker where the worker below it listens.
+            for(int index = 0; index < strips; index++) {
+                int below = index + 1 < strips ? listenPorts[index + 1] : -1;
+                Loopback.sendInt(channels[index], below);
+            }
+        }
+        counts = collectCounts();
+    }
+
+    /**
+     * Check that the workers are still starting up.
+     * @param deadline The time by which they must have connected.
+     * @throws IOException If a worker has exited, or time is up.
+     */
+    private void checkStarting(long deadline) throws IOException
+    {
+        for(Process worker : workers) {
+            if(! worker.isAlive()) {
+                throw new IOException("A strip worker exited while starting.");
+            }
+        }
+        if(System.currentTimeMillis() > deadline) {
+            throw new IOException("The strip workers did not connect in time.");
+        }
+    }
+
+    /**
+     * Run every strip for one step, in lockstep.
+     * @return The population of each species in the world afterwards,
+     *         indexed by species id.
+     * @throws IOException If a worker fails.
+     */
+    public int[] simulateOneStep() throws IOException
+    {
+        for(SocketChannel channel : channels) {
+            Loopback.sendInt(channel, StripWorker.STEP);
+        }
+        counts = collectCounts();
+        step++;
+        return counts;
+    }
+
+    /**
+     * Run the world for the given number of steps, or until it stops
+     * being viable.
+     * @param numSteps The number of steps to run for.
+     * @throws IOException If a worker fails.
+     */
+    public void simulate(int numSteps) throws IOException
+    {
+        for(int n = 1; n <= numSteps && isViable(); n++) {
+            simulateOneStep();
+        }
+    }
+
+    /**
+     * Receive every worker's populations and add them up.
+     * @return The population of each species in the world.
+     * @throws IOException If a worker fails.
+     */
+    private int[] collectCounts() throws IOException
+    {
+        int[] total = new int[Species.COUNT];
+        for(SocketChannel channel : channels) {
+            ByteBuffer reply = Loopback.receive(channel);
+            for(int species = 0; species < Species.COUNT; species++) {
+                total[species] += reply.getInt();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Return whether there is at least one predator, one prey, and one
+     * plant in the world.
+     * @return true if the world is viable.
+     */
+    public boolean isViable()
+    {
+        return Species.isViable(counts);
+    }
+
+    /**
+     * Return the population of each species in the world.
+     * @return The populations, indexed by species id.
+     */
+    public int[] getCounts()
+    {
+        return counts.clone();
+    }
+
+    /**
+     * Return the number of steps run.
+     * @return The number of steps.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Return the number of strips the world is run as.
+     * @return The number of strips.
+     */
+    public int getStrips()
+    {
+        return strips;
+    }
+
+    /**
+     * Stop the workers and wait for them to exit.
+     */
+    public void close()
+    {
+        for(SocketChannel channel : channels) {
+            if(channel != null) {
+                try {
+                    Loopback.sendInt(channel, StripWorker.STOP);
+                    channel.close();
+                }
+                catch(IOException e) {
+                    // The worker has gone already.
+                }
+            }
+        }
+        for(Process worker : workers) {
+            try {
+                if(! worker.waitFor(10, TimeUnit.SECONDS)) {
+                    worker.destroyForcibly();
+                }
+            }
+            catch(InterruptedException e) {
+                worker.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Pause for a while.
+     * @param millisec The time to pause for, in milliseconds.
+     */
+    private void sleep(long millisec)
+    {
+        try {
+            Thread.sleep(millisec);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The field of one strip of a world that is split across processes.
+ * Above and below the strip's own rows are halo rows, holding copies of
+ * the neighbouring strips' organisms, which the strip's organisms can
+ * see and eat but which do not act. Meals of halo organisms are
+ * recorded, so that the strip owning the prey can kill the original.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class StripField extends Field
+{
+    // The first of the strip's own rows, and the row after its last.
+    private final int ownFirst, ownEnd;
+    // Where, in the current state of the field, halo organisms were eaten.
+    private final List<Location> haloMeals;
+
+    /**
+     * Create the field of a strip.
+     * @param depth The depth of the field, including the halo rows.
+     * @param width The width of the field.
+     * @param ownFirst The first of the strip's own rows.
+     * @param ownEnd The row after the last of the strip's own rows.
+     */
+    public StripField(int depth, int width, int ownFirst, int ownEnd)
+    {
+        super(depth, width);
+        this.ownFirst = ownFirst;
+        this.ownEnd = ownEnd;
+        haloMeals = new ArrayList<>();
+    }
+
+    /**
+     * Let an animal eat an organism, recording the meal if the prey is
+     * a copy from a halo row.
+     * @param eater The animal that eats.
+     * @param prey The organism eaten.
+     * @param location Where the prey is in the current state of the field.
+     * @param nutrition The nutrition the eater gains.
+     */
+    @Override
+    public void eat(Animal eater, Organism prey, Location location, int nutrition)
+    {
+        if(! isOwnRow(location.row())) {
+            haloMeals.add(location);
+        }
+        super.eat(eater, prey, location, nutrition);
+    }
+
+    /**
+     * Return whether a row is one of the strip's own rows.
+     * @param row The row.
+     * @return true if the strip owns the row, false if it is a halo row.
+     */
+    public boolean isOwnRow(int row)
+    {
+        return row >= ownFirst && row < ownEnd;
+    }
+
+    /**
+     * Return where halo organisms were eaten while this state was built.
+     * @return The locations, in the previous state of the field.
+     */
+    public List<Location> getHaloMeals()
+    {
+        return haloMeals;
+    }
+}
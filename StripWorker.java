@@ -0,0 +1,420 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The process running one strip of a world that is split across
+ * processes by a StripCoordinator. The world is cut into strips of
+ * whole rows; each worker runs a Simulator over its own rows plus halo
+ * rows above and below, as deep as the furthest any organism reads or
+ * moves in a step.
+ *
+ * Each step, when the coordinator says so, the worker:
+ * - sends the rows next to each neighbour to that neighbour, and places
+ *   the rows it receives in its halos, where they do not act;
+ * - lets its own organisms act;
+ * - sends each neighbour the organisms that moved or were born into the
+ *   halo on its side, and the halo organisms that were eaten;
+ * - empties its halos, kills its own organisms that the neighbours ate,
+ *   and places the organisms that moved in. A migrant whose place has
+ *   been taken dies of overcrowding;
+ * - finishes the step, spreading the disease, and reports its
+ *   populations to the coordinator.
+ *
+ * A world run as strips does not give the same results as a single
+ * Simulator of the same seed, even though it starts out the same:
+ * - the strips draw from their own streams, in their own order;
+ * - halo organisms are seen as they were at the start of the step, so
+ *   an organism near a boundary does not see what the neighbour's
+ *   organisms did earlier in the step, e.g. when it looks for food,
+ *   mates or free places;
+ * - a prey next to a boundary can be eaten on both sides in the same
+ *   step, and both eaters are fed. Meals are not reconciled, since that
+ *   would take another exchange per step to take the food back;
+ * - two organisms from different strips can choose the same place. The
+ *   strip's own organism keeps it, and the migrant dies of overcrowding
+ *   where in one process it would have chosen another place;
+ * - the disease does not spread across a boundary, except with migrants.
+ *
+ * Neighbours talk over loopback sockets in a compact binary form: a
+ * length, then per organism its species, its row in the world, its
+ * column and its own state.
+ *
+ * @author Yiun Kim and Reuben Weibel
+ * @version 7.2
+ */
+public class StripWorker
+{
+    // The commands the coordinator sends.
+    static final int STOP = 0;
+    static final int STEP = 1;
+    // The depth of the halo on each side of a strip.
+    static final int HALO_ROWS = ParallelStepEngine.MAX_INTERACTION_RANGE;
+
+    // The row of the world that the field's first row is.
+    private final int worldRow;
+    // The first of the strip's own rows in the field, and the row after its last.
+    private final int ownFirst, ownEnd;
+    // The simulation of the strip and its halos.
+    private final Simulator simulator;
+    // An organism of each species, copied to rebuild received organisms.
+    private final Organism[] prototypes;
+    // The connection to the coordinator.
+    private final SocketChannel coordinator;
+    // The connections to the strips above and below, or null at the
+    // top and bottom of the world.
+    private SocketChannel above, below;
+
+    /**
+     * Run a worker until the coordinator stops it. The arguments are the
+     * coordinator's port, the strip's index, the number of strips, the
+     * world's depth and width, and the seed.
+     * @param args The arguments.
+     * @throws IOException If a connection fails.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        StripWorker worker = new StripWorker(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                                             Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                                             Integer.parseInt(args[4]), Long.parseLong(args[5]));
+        worker.serve();
+    }
+
+    /**
+     * Create the worker of a strip and connect it to the coordinator and
+     * its neighbours.
+     * @param port The coordinator's port on the loopback address.
+     * @param index The index of the strip, counting from the top.
+     * @param strips The number of strips.
+     * @param depth The depth of the world.
+     * @param width The width of the world.
+     * @param seed The seed of the world.
+     * @throws IOException If a connection fails.
+     */
+    public StripWorker(int port, int index, int strips, int depth, int width, long seed)
+        throws IOException
+    {
+        int start = firstRowOf(index, strips, depth);
+        int end = firstRowOf(index + 1, strips, depth);
+        int top = Math.min(HALO_ROWS, start);
+        int bottom = Math.min(HALO_ROWS, depth - end);
+        worldRow = start - top;
+        ownFirst = top;
+        ownEnd = top + end - start;
+
+        simulator = new Simulator(top + end - start + bottom, width, seed, false);
+        simulator.setStepEngine(new SerialStepEngine() {
+            public Field createField(int fieldDepth, int fieldWidth)
+            {
+                return new StripField(fieldDepth, fieldWidth, ownFirst, ownEnd);
+            }
+
+            public void step(List<Organism> acting, Field currentField, Field nextFieldState,
+                             int time, Weather weather)
+            {
+                super.step(acting, currentField, nextFieldState, time, weather);
+                try {
+                    settle(currentField, (StripField) nextFieldState);
+                }
+                catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        simulator.setWorldRow(worldRow);
+        simulator.reset();
+        clearHalos(simulator.getField());
+
+        prototypes = new Organism[Species.COUNT];
+        prototypes[Species.LION] = new Lion(false, null);
+        prototypes[Species.CHEETAH] = new Cheetah(false, null);
+        prototypes[Species.HYENA] = new Hyena(false, null);
+        prototypes[Species.ZEBRA] = new Zebra(false, null);
+        prototypes[Species.ELEPHANT] = new Elephant(false, null);
+        prototypes[Species.GRASS] = new Grass(false, null);
+        prototypes[Species.FRUIT] = new Fruit(false, null);
+
+        try(ServerSocketChannel listener = Loopback.listen()) {
+            coordinator = Loopback.connect(port);
+            Loopback.send(coordinator, ByteBuffer.allocate(8).putInt(index)
+                                         .putInt(Loopback.portOf(listener)).array());
+            int belowPort = Loopback.receive(coordinator).getInt();
+            if(belowPort >= 0) {
+                below = Loopback.connect(belowPort);
+            }
+            if(index > 0) {
+                above = Loopback.prepare(listener.accept());
+            }
+        }
+    }
+
+    /**
+     * Return the first row of the world that belongs to a strip.
+     * @param index The index of the strip.
+     * @param strips The number of strips.
+     * @param depth The depth of the world.
+     * @return The row.
+     */
+    static int firstRowOf(int index, int strips, int depth)
+    {
+        return (int) ((long) index * depth / strips);
+    }
+
+    /**
+     * Report the starting populations, then step whenever the
+     * coordinator says so, until it says to stop.
+     * @throws IOException If a connection fails.
+     */
+    public void serve() throws IOException
+    {
+        try {
+            sendCounts();
+            while(Loopback.receive(coordinator).getInt() == STEP) {
+                step();
+                sendCounts();
+            }
+        }
+        finally {
+            coordinator.close();
+            if(above != null) {
+                above.close();
+            }
+            if(below != null) {
+                below.close();
+            }
+        }
+    }
+
+    /**
+     * Run one step of the strip, exchanging halos and migrants with the
+     * neighbours.
+     * @throws IOException If a connection fails.
+     */
+    private void step() throws IOException
+    {
+        Field before = simulator.getField();
+        ByteBuffer[] halos = exchange(encodeRows(before, ownFirst, Math.min(ownFirst + HALO_ROWS, ownEnd)),
+                                      encodeRows(before, Math.max(ownEnd - HALO_ROWS, ownFirst), ownEnd));
+        for(ByteBuffer halo : halos) {
+            if(halo != null) {
+                for(Organism organism : decodeOrganisms(new DataInputStream(toStream(halo)))) {
+                    before.carryOrganism(organism, organism.getLocation());
+                }
+            }
+        }
+
+        try {
+            simulator.simulateOneStep();
+        }
+        catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Once the strip's own organisms have acted, exchange the migrants
+     * and meals with the neighbours. This is done within the step, so
+     * the disease reaches the migrants and their deaths are recorded
+     * with the step's events.
+     * @param current The current state of the field.
+     * @param next The new state being built.
+     * @throws IOException If a connection fails.
+     */
+    private void settle(Field current, StripField next) throws IOException
+    {
+        ByteBuffer[] arrivals = exchange(encodeDepartures(next, 0, ownFirst),
+                                         encodeDepartures(next, ownEnd, next.getDepth()));
+        clearHalos(next);
+        for(ByteBuffer arrival : arrivals) {
+            if(arrival != null) {
+                DataInputStream in = new DataInputStream(toStream(arrival));
+                List<Organism> migrants = decodeOrganisms(in);
+                int meals = in.readInt();
+                for(int i = 0; i < meals; i++) {
+                    Organism prey = current.getOrganismAt(in.readInt() - worldRow, in.readInt());
+                    if(prey != null && prey.isAlive()) {
+                        prey.setDead();
+                    }
+                }
+                for(Organism migrant : migrants) {
+                    if(! next.tryPlace(migrant, migrant.getLocation())) {
+                        // Overcrowding.
+                        next.recordEvent(EventBatch.OVERCROWDING, migrant);
+                        migrant.setDead();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a message to each neighbour and receive one from each. The
+     * messages are sent on another thread, so that two neighbours
+     * sending to each other at once cannot both block.
+     * @param toAbove The message for the strip above.
+     * @param toBelow The message for the strip below.
+     * @return The messages from the strips above and below, or null
+     *         where there is no neighbour.
+     * @throws IOException If a connection fails.
+     */
+    private ByteBuffer[] exchange(byte[] toAbove, byte[] toBelow) throws IOException
+    {
+        CompletableFuture<Void> sending = CompletableFuture.runAsync(() -> {
+            try {
+                if(above != null) {
+                    Loopback.send(above, toAbove);
+                }
+                if(below != null) {
+                    Loopback.send(below, toBelow);
+                }
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ByteBuffer[] received = new ByteBuffer[2];
+        received[0] = above != null ? Loopback.receive(above) : null;
+        received[1] = below != null ? Loopback.receive(below) : null;
+        sending.join();
+        return received;
+    }
+
+    /**
+     * Encode the live organisms in some rows of the field.
+     * @param field The field.
+     * @param from The first row.
+     * @param to The row after the last.
+     * @return The encoded organisms.
+     * @throws IOException If an organism cannot be encoded.
+     */
+    private byte[] encodeRows(Field field, int from, int to) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        encodeOrganisms(out, field, from, to);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode the organisms that have moved or been born into some halo
+     * rows of the next state, and the halo organisms on that side that
+     * were eaten.
+     * @param next The next state of the field.
+     * @param from The first halo row.
+     * @param to The row after the last.
+     * @return The encoded organisms and meals.
+     * @throws IOException If an organism cannot be encoded.
+     */
+    private byte[] encodeDepartures(StripField next, int from, int to) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        encodeOrganisms(out, next, from, to);
+        List<Location> meals = new ArrayList<>();
+        for(Location meal : next.getHaloMeals()) {
+            if(meal.row() >= from && meal.row() < to) {
+                meals.add(meal);
+            }
+        }
+        out.writeInt(meals.size());
+        for(Location meal : meals) {
+            out.writeInt(meal.row() + worldRow);
+            out.writeInt(meal.col());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write the live organisms in some rows of the field.
+     * @param out Where to write them.
+     * @param field The field.
+     * @param from The first row.
+     * @param to The row after the last.
+     * @throws IOException If an organism cannot be written.
+     */
+    private void encodeOrganisms(DataOutputStream out, Field field, int from, int to)
+        throws IOException
+    {
+        List<Organism> found = new ArrayList<>();
+        for(int row = from; row < to; row++) {
+            for(int col = field.nextOccupiedCol(row, 0); col < field.getWidth();
+                col = field.nextOccupiedCol(row, col + 1)) {
+                Organism organism = field.getOrganismAt(row, col);
+                if(organism != null && organism.isAlive()) {
+                    found.add(organism);
+                }
+            }
+        }
+        out.writeInt(found.size());
+        for(Organism organism : found) {
+            out.writeByte(organism.getSpecies());
+            out.writeInt(organism.getLocation().row() + worldRow);
+            out.writeInt(organism.getLocation().col());
+            organism.writeState(out);
+        }
+    }
+
+    /**
+     * Read organisms written by encodeOrganisms, placed in this strip's rows.
+     * @param in Where to read them from.
+     * @return The organisms.
+     * @throws IOException If an organism cannot be read.
+     */
+    private List<Organism> decodeOrganisms(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        List<Organism> organisms = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            Organism organism = prototypes[in.readByte()].copy();
+            Location location = new Location(in.readInt() - worldRow, in.readInt());
+            organism.readState(in, location);
+            organisms.add(organism);
+        }
+        return organisms;
+    }
+
+    /**
+     * Empty the halo rows of the field.
+     * @param field The field.
+     */
+    private void clearHalos(Field field)
+    {
+        int width = field.getWidth();
+        field.fillRows(0, new Organism[ownFirst * width]);
+        field.fillRows(ownEnd, new Organism[(field.getDepth() - ownEnd) * width]);
+    }
+
+    /**
+     * Send the strip's populations to the coordinator.
+     * @throws IOException If the connection fails.
+     */
+    private void sendCounts() throws IOException
+    {
+        ByteBuffer counts = ByteBuffer.allocate(4 * Species.COUNT);
+        for(int count : simulator.getField().countSpecies()) {
+            counts.putInt(count);
+        }
+        Loopback.send(coordinator, counts.array());
+    }
+
+    /**
+     * Return a stream over the bytes of a received message.
+     * @param message The message.
+     * @return The stream.
+     */
+    private static ByteArrayInputStream toStream(ByteBuffer message)
+    {
+        return new ByteArrayInputStream(message.array(), message.position(), message.remaining());
+    }
+}
@@ -6,7 +6,7 @@ import java.util.Random;
  * @author Yiun K and Reuben W
  * @version 06.02.2025
  */
-public class Timer
+public class Timer implements Cloneable
 {
     // Time is stored in hours.
     private int hour;
@@ -28,6 +28,20 @@ public class Timer
         hour = rand.nextInt(24);
     }
     
+    /**
+     * Return a copy of the timer, showing the same time.
+     * @return The copy.
+     */
+    public Timer copy()
+    {
+        try {
+            return (Timer) super.clone();
+        }
+        catch(CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Increment time by 1 hour.
      */
@@ -5,7 +5,7 @@ import java.util.Random;
  * @author Yiun Kim and Reuben Weibel
  * @version 7.1
  */
-public class Weather {
+public class Weather implements Cloneable {
     // Characteristics of the weather.
     // The current temperature.
     private int temp;
@@ -23,7 +23,7 @@ public class Weather {
     private static final int MAX_VISIBILITY = 1;
     
     // Random number generator.
-    private final static Random rand = Randomizer.getRandom();
+    private final static Random rand = Randomizer.getRandom(Randomizer.WEATHER);
     
     /**
      * Constructor for instances of the Weather class.
@@ -37,6 +37,20 @@ public class Weather {
         rain = (rand.nextDouble() < 0.2)?true:false;
     }
 
+    /**
+     * Return a copy of the weather as it is now.
+     * @return The copy.
+     */
+    public Weather copy()
+    {
+        try {
+            return (Weather) super.clone();
+        }
+        catch(CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Method that updates the weather.
      */